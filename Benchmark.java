@@ -0,0 +1,341 @@
+/*****************************************************************************
+ * File: Benchmark.java
+ *
+ * A benchmark harness for the max-flow engines.  For each input graph the
+ * harness first times loading the file on its own, then builds a single
+ * CsrResidualGraph and times each engine solving it, so that neither the
+ * parse nor the construction of a working structure is charged to any
+ * engine.  The residual graph is reset between runs, outside the timed
+ * region.
+ *
+ * Every measurement is preceded by a number of untimed warmup iterations so
+ * that the JIT compiler has compiled the hot paths before timing begins, and
+ * is then repeated a number of times.  The harness reports the median, the
+ * mean with the half-width of its 99% confidence interval, and the extremes,
+ * all in milliseconds.  The flow found by every run is checked against the
+ * first, which both catches broken engines and keeps the JIT from
+ * discarding a result nobody looks at.  Beneath each engine's timings are
+ * the bytes allocated by its last timed run and the SolverStats counters
+ * for that run, and beneath the load timings is the heap retained by each
+ * representation of the graph (see MemoryProbe).
+ *
+ * Usage:
+ *
+ *     java Benchmark [-warmup N] [-runs N] [-engines name,name,...]
+ *                    [-cache dir] [-cache-size MB] [path ...]
+ *
+ * Each path may name a graph file or a directory, which is searched
+ * recursively for .txt files.  With no paths, the four generated families
+ * (Bipartite_Graph, Mesh_Graph/graphs, Fixed_Degree and Random_Graph) are
+ * benchmarked.  Engines are named as in MaxFlowEngine.forName; by default
+ * every engine is run.  For a graph in CompressedGraphFormat, the engines
+ * work on a residual graph decoded straight from the file.  With -cache,
+ * graphs are loaded through a GraphCache in the given directory, bounded by
+ * -cache-size (1024MB by default), so the load timings are those of a cache
+ * hit once each file has been seen.
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*; // For ArrayList, LinkedHashMap, List, Locale, Map
+import java.util.stream.*; // For Stream, Collectors
+
+public final class Benchmark {
+    /* The directories benchmarked when no paths are given. */
+    static final String[] DEFAULT_PATHS = {
+        "Bipartite_Graph", "Mesh_Graph/graphs", "Fixed_Degree", "Random_Graph"
+    };
+
+    /* The graph representations whose footprints are measured, in order. */
+    static final String[] REPRESENTATIONS = {
+        "FlowGraph", "CsrResidualGraph", "FlowNetwork", "ResidualGraph", "SimpleGraph"
+    };
+
+    static final int DEFAULT_WARMUP = 5;
+    static final int DEFAULT_RUNS = 20;
+
+    /**
+     * The outcome of timing one engine on one graph: the flow it found, how
+     * long each timed run took, and the memory allocated and work done by
+     * the last run.
+     */
+    public static final class Measurement {
+        private final int flow;
+        private final Samples samples;
+        private final long allocatedBytes;
+        private final SolverStats stats;
+
+        Measurement(int flow, Samples samples, long allocatedBytes, SolverStats stats) {
+            this.flow = flow;
+            this.samples = samples;
+            this.allocatedBytes = allocatedBytes;
+            this.stats = stats;
+        }
+
+        /**
+         * Returns the value of the flow found by every run.
+         *
+         * @return The value of the flow.
+         */
+        public int flow() {
+            return flow;
+        }
+
+        /**
+         * Returns the timings of the measured runs.
+         *
+         * @return The timings.
+         */
+        public Samples samples() {
+            return samples;
+        }
+
+        /**
+         * Returns the number of bytes allocated by the last timed run, or
+         * -1 if the JVM can't report it.
+         *
+         * @return The number of bytes allocated.
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Returns the counters for the last timed run.
+         *
+         * @return The counters.
+         */
+        public SolverStats stats() {
+            return stats;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int warmup = DEFAULT_WARMUP;
+        int runs = DEFAULT_RUNS;
+        List<MaxFlowEngine> engines = Arrays.asList(MaxFlowEngine.values());
+        String cache = null;
+        long cacheBytes = GraphCache.DEFAULT_MAX_BYTES;
+        List<String> paths = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-warmup") && i + 1 < args.length) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-runs") && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-engines") && i + 1 < args.length) {
+                engines = new ArrayList<MaxFlowEngine>();
+                for (String name: args[++i].split(","))
+                    engines.add(MaxFlowEngine.forName(name));
+            } else if (args[i].equals("-cache") && i + 1 < args.length) {
+                cache = args[++i];
+            } else if (args[i].equals("-cache-size") && i + 1 < args.length) {
+                cacheBytes = Long.parseLong(args[++i]) << 20;
+            } else if (args[i].startsWith("-")) {
+                System.err.println("usage: java Benchmark [-warmup N] [-runs N] "
+                                   + "[-engines name,name,...] [-cache dir] [-cache-size MB] "
+                                   + "[path ...]");
+                System.exit(1);
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (runs < 1)
+            throw new IllegalArgumentException("At least one run is required.");
+        if (cache != null)
+            GraphCache.install(new GraphCache(cache, cacheBytes));
+        if (paths.isEmpty())
+            paths = Arrays.asList(DEFAULT_PATHS);
+
+        System.out.printf("# warmup %d, runs %d; times in ms, error is the 99%% confidence half-width%n",
+                          warmup, runs);
+        System.out.printf("%-48s %8s %8s  %-24s %10s %10s %10s %9s %10s %10s%n",
+                          "file", "n", "m", "phase", "flow", "median", "mean", "error", "min", "max");
+
+        for (Path file: findGraphs(paths)) {
+            String path = file.toString();
+            Samples load = measureLoad(path, warmup, runs);
+            FlowGraph g = FlowGraph.load(path);
+
+            CompressedGraphFormat.Graph compressed =
+                CompressedGraphFormat.isCompressed(path) ? CompressedGraphFormat.open(path) : null;
+            int s, t;
+            try {
+                s = compressed != null ? compressed.id("s") : g.id("s");
+                t = compressed != null ? compressed.id("t") : g.id("t");
+            } catch (NoSuchElementException e) {
+                System.out.printf("%-48s skipped: %s%n", path, e.getMessage());
+                continue;
+            }
+
+            printRow(path, g, "load", "", load);
+            StringBuilder retained = new StringBuilder("retained:");
+            for (Map.Entry<String, Long> entry: measureFootprints(path, g).entrySet())
+                retained.append(String.format(Locale.ROOT, " %s=%d (%.1f/edge)", entry.getKey(),
+                                              entry.getValue(), (double) entry.getValue() / g.numEdges()));
+            System.out.printf("%-68s %s%n", "", retained);
+            CsrResidualGraph residual = residualGraph(g, compressed);
+            for (MaxFlowEngine engine: engines) {
+                Measurement m = measureSolve(engine, residual, s, t, warmup, runs);
+                printRow(path, g, engine.displayName(), Integer.toString(m.flow()), m.samples());
+                System.out.printf("%-68s alloc=%d %s%n", "", m.allocatedBytes(), m.stats());
+            }
+        }
+    }
+
+    /**
+     * Times loading the graph file at the given path.
+     *
+     * @param path The path to the graph file.
+     * @param warmup The number of untimed loads to do first.
+     * @param runs The number of timed loads.
+     * @return The time taken by each timed load.
+     * @throws IOException If the file cannot be loaded.
+     */
+    public static Samples measureLoad(String path, int warmup, int runs) throws IOException {
+        int edges = 0;
+        for (int i = 0; i < warmup; ++i)
+            edges += FlowGraph.load(path).numEdges();
+
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; ++i) {
+            long start = System.nanoTime();
+            FlowGraph g = FlowGraph.load(path);
+            nanos[i] = System.nanoTime() - start;
+            edges += g.numEdges();
+        }
+        if (edges < 0)
+            throw new AssertionError(); // Keeps the loads from being discarded.
+        return new Samples(nanos);
+    }
+
+    /**
+     * Times an engine computing a max flow in the given residual graph.
+     * The graph is reset before every run, and holds a maximum flow when
+     * this method returns.
+     *
+     * @param engine The engine to time.
+     * @param g The residual graph to solve.
+     * @param s The id of the source node.
+     * @param t The id of the sink node.
+     * @param warmup The number of untimed runs to do first.
+     * @param runs The number of timed runs.
+     * @return The flow found, the time taken by each timed run, and the
+     *         bytes allocated by and counters for the last timed run.
+     * @throws IllegalStateException If two runs find different flows.
+     */
+    public static Measurement measureSolve(MaxFlowEngine engine, CsrResidualGraph g,
+                                           int s, int t, int warmup, int runs) {
+        int flow = -1;
+        for (int i = 0; i < warmup; ++i) {
+            g.reset();
+            flow = check(engine, flow, engine.solve(g, s, t));
+        }
+
+        SolverStats stats = SolverStats.current();
+        long[] nanos = new long[runs];
+        long allocated = 0;
+        for (int i = 0; i < runs; ++i) {
+            g.reset();
+            stats.reset();
+            long bytes = MemoryProbe.allocatedBytes();
+            long start = System.nanoTime();
+            int result = engine.solve(g, s, t);
+            nanos[i] = System.nanoTime() - start;
+            allocated = bytes < 0 ? -1 : MemoryProbe.allocatedBytes() - bytes;
+            flow = check(engine, flow, result);
+        }
+        return new Measurement(flow, new Samples(nanos), allocated, stats.snapshot());
+    }
+
+    /**
+     * Measures the heap retained by each representation of a graph, in the
+     * order given by REPRESENTATIONS.  Each representation is built on its
+     * own from the file or from the given FlowGraph, except that the
+     * ResidualGraph is measured on its own, apart from the FlowNetwork it is
+     * built from.  This forces several full garbage collections, and is
+     * only accurate while no other thread is allocating.
+     *
+     * @param path The path to the graph file.
+     * @param g The graph stored in that file.
+     * @return The number of bytes retained by each representation.
+     * @throws IOException If the file cannot be loaded.
+     */
+    public static Map<String, Long> measureFootprints(String path, FlowGraph g) throws IOException {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        try {
+            result.put("FlowGraph", MemoryProbe.retainedBytes(() -> {
+                try {
+                    return FlowGraph.load(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        result.put("CsrResidualGraph", MemoryProbe.retainedBytes(() -> new CsrResidualGraph(g)));
+        result.put("FlowNetwork", MemoryProbe.retainedBytes(() -> g.toFlowNetwork()));
+        FlowNetwork<Integer> network = g.toFlowNetwork();
+        result.put("ResidualGraph", MemoryProbe.retainedBytes(() -> new ResidualGraph<Integer>(network)));
+        result.put("SimpleGraph", MemoryProbe.retainedBytes(() -> g.toSimpleGraph(new Vertex[g.numNodes()])));
+        return result;
+    }
+
+    /**
+     * Builds the residual graph the engines are run on.  A graph in the
+     * compressed format is decoded edge by edge straight from its mapped
+     * file, with no FlowGraph in between; otherwise the residual graph is
+     * built from the loaded FlowGraph.
+     *
+     * @param g The loaded graph, or null if compressed is given.
+     * @param compressed The opened compressed graph, or null if the graph
+     *                   isn't compressed.
+     * @return The residual graph, holding no flow.
+     */
+    static CsrResidualGraph residualGraph(FlowGraph g, CompressedGraphFormat.Graph compressed) {
+        return compressed != null ? new CsrResidualGraph(compressed) : new CsrResidualGraph(g);
+    }
+
+    /**
+     * Expands the given paths into a sorted list of graph files.  Files are
+     * taken as they are; directories are searched recursively for files
+     * whose names end in .txt.
+     *
+     * @param paths The files and directories to search.
+     * @return The graph files found.
+     * @throws IOException If a directory cannot be searched.
+     */
+    public static List<Path> findGraphs(List<String> paths) throws IOException {
+        List<Path> result = new ArrayList<Path>();
+        for (String name: paths) {
+            Path path = Paths.get(name);
+            if (!Files.isDirectory(path)) {
+                result.add(path);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(path)) {
+                result.addAll(walk.filter(Files::isRegularFile)
+                                  .filter(p -> p.getFileName().toString().endsWith(".txt"))
+                                  .sorted()
+                                  .collect(Collectors.toList()));
+            }
+        }
+        return result;
+    }
+
+    /* Checks that a run found the same flow as the runs before it. */
+    private static int check(MaxFlowEngine engine, int expected, int actual) {
+        if (expected >= 0 && expected != actual)
+            throw new IllegalStateException(engine.displayName() + " found a flow of " + actual
+                                            + " after finding " + expected + ".");
+        return actual;
+    }
+
+    private static void printRow(String path, FlowGraph g, String phase, String flow, Samples samples) {
+        System.out.printf(Locale.ROOT, "%-48s %8d %8d  %-24s %10s %10.3f %10.3f %9.3f %10.3f %10.3f%n",
+                          path, g.numNodes(), g.numEdges(), phase, flow,
+                          samples.median() / 1e6, samples.mean() / 1e6, samples.errorMargin() / 1e6,
+                          samples.min() / 1e6, samples.max() / 1e6);
+    }
+}
@@ -0,0 +1,342 @@
+/*****************************************************************************
+ * File: BinaryGraphFormat.java
+ *
+ * A compact binary file format for graphs, so that a graph that is run
+ * many times only has to be parsed once.  The file holds the node-name
+ * table and the edges in compressed-sparse-row form, grouped by tail.  Every
+ * value is a little-endian int, and every section starts on a four-byte
+ * boundary:
+ *
+ *     magic        The four bytes "MFGB".
+ *     version      The format version, currently 1.
+ *     numNodes     The number of nodes, n.
+ *     numEdges     The number of edges, m.
+ *     nameBytes    The total length of the node names in bytes.
+ *     flags        Zero, or KEEPS_ORDER if the order section is present.
+ *     nameOffsets  n + 1 ints; the name of node i is bytes nameOffsets[i]
+ *                  up to nameOffsets[i + 1] of the name pool.
+ *     namePool     The UTF-8 bytes of every name, padded with zeros to a
+ *                  multiple of four bytes.
+ *     offsets      n + 1 ints; the edges leaving node u are edges
+ *                  offsets[u] up to offsets[u + 1].
+ *     heads        m ints, the end node of each edge.
+ *     capacities   m ints, the capacity of each edge.
+ *     order        Only with KEEPS_ORDER: m ints, the number each edge had
+ *                  in the graph that was written.
+ *
+ * Nodes keep the ids they had in the graph that was written.  Edges are
+ * stored in order of their tails (and in their original order among edges
+ * with the same tail), so unless the order section is present, a graph read
+ * back from a file may number its edges differently from the graph that was
+ * written.  The order section costs another 4m bytes, but the graph read
+ * back is then identical, down to the order of the arcs in its residual
+ * graph, which is what GraphCache needs.
+ *
+ * The loader memory-maps the file and moves each array into the heap with
+ * a single bulk IntBuffer.get, which the JVM turns into a memory copy.
+ * Java arrays can't be backed by mapped memory, so that copy is the least a
+ * loader can do; beyond it and building the name dictionary, loading a
+ * graph costs little more than paging the file in.  Files larger than 2GB
+ * are mapped a section at a time.
+ *
+ * FlowGraph.load recognizes these files by their magic number, so they can
+ * be used anywhere a text graph can.  Run as a program, this class converts
+ * text graphs to binary ones:
+ *
+ *     java BinaryGraphFormat input.txt [output]
+ *
+ * The output defaults to the input's name with ".mfg" added.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*; // For Arrays
+
+public final class BinaryGraphFormat {
+    /* The first four bytes of every binary graph file. */
+    private static final byte[] MAGIC = { 'M', 'F', 'G', 'B' };
+
+    /* The version of the format written by this class. */
+    static final int VERSION = 1;
+
+    /* The flag marking a file that records the original order of its edges. */
+    static final int KEEPS_ORDER = 1;
+
+    /* The size of the header in bytes. */
+    private static final int HEADER_BYTES = 24;
+
+    /* The most bytes mapped at once when reading an array. */
+    private static final int MAX_MAPPING = 1 << 30;
+
+    /* The size of the buffer used when writing. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Returns whether the file at the given path is a binary graph file.
+     *
+     * @param path The path to the file.
+     * @return Whether the file starts with the binary format's magic number.
+     * @throws IOException If the file can't be read.
+     */
+    public static boolean isBinary(String path) throws IOException {
+        return startsWith(path, MAGIC);
+    }
+
+    /**
+     * Returns whether the file at the given path starts with the given magic
+     * number.
+     */
+    static boolean startsWith(String path, byte[] expected) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(expected.length);
+            while (magic.hasRemaining() && channel.read(magic) >= 0)
+                ;
+            return !magic.hasRemaining() && ByteBuffer.wrap(expected).equals(magic.flip());
+        }
+    }
+
+    /**
+     * Loads the binary graph file at the given path.
+     *
+     * @param path The path to the file.
+     * @return The graph stored in that file.
+     * @throws IOException If the file can't be read, isn't a binary graph
+     *                     file, or is damaged.
+     */
+    public static FlowGraph load(String path) throws IOException {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.PARSE);
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return read(channel, path);
+        } finally {
+            timer.exit(outer);
+        }
+    }
+
+    /**
+     * Does the work of load().
+     */
+    private static FlowGraph read(FileChannel channel, String path) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES)
+            throw damaged(path, "it is too short");
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                                   .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < MAGIC.length; ++i)
+            if (header.get(i) != MAGIC[i])
+                throw new IOException("File " + path + " is not a binary graph file.");
+        int version = header.getInt(4);
+        if (version != VERSION)
+            throw new IOException("File " + path + " has format version " + version
+                                  + "; only version " + VERSION + " is supported.");
+        int numNodes = header.getInt(8);
+        int numEdges = header.getInt(12);
+        int nameBytes = header.getInt(16);
+        int flags = header.getInt(20);
+        if (numNodes < 0 || numEdges < 0 || nameBytes < 0 || (flags & ~KEEPS_ORDER) != 0)
+            throw damaged(path, "its header is corrupt");
+        boolean keepsOrder = (flags & KEEPS_ORDER) != 0;
+
+        long namesAt = HEADER_BYTES + 4L * (numNodes + 1);
+        long offsetsAt = namesAt + padded(nameBytes);
+        long headsAt = offsetsAt + 4L * (numNodes + 1);
+        long capacitiesAt = headsAt + 4L * numEdges;
+        long orderAt = capacitiesAt + 4L * numEdges;
+        if (orderAt + (keepsOrder ? 4L * numEdges : 0) != size)
+            throw damaged(path, "its length doesn't match its header");
+
+        /* Rebuild the name dictionary straight from the mapped bytes. */
+        int[] nameOffsets = readInts(channel, HEADER_BYTES, numNodes + 1);
+        NodeDictionary names = new NodeDictionary(numNodes, nameBytes);
+        MappedByteBuffer pool = channel.map(FileChannel.MapMode.READ_ONLY, namesAt, nameBytes);
+        for (int id = 0; id < numNodes; ++id) {
+            int start = nameOffsets[id];
+            int end = nameOffsets[id + 1];
+            if (start < 0 || end < start || end > nameBytes)
+                throw damaged(path, "its name table is corrupt");
+            if (names.intern(pool, start, end - start) != id)
+                throw damaged(path, "it names a node twice");
+        }
+
+        /* Copy out the edges, and expand the offsets back into the tail of
+         * each edge, checking as we go that every edge is well-formed.
+         */
+        int[] offsets = readInts(channel, offsetsAt, numNodes + 1);
+        int[] heads = readInts(channel, headsAt, numEdges);
+        int[] capacities = readInts(channel, capacitiesAt, numEdges);
+        if (offsets[0] != 0 || offsets[numNodes] != numEdges)
+            throw damaged(path, "its edge offsets are corrupt");
+        int[] tails = new int[numEdges];
+        for (int u = 0; u < numNodes; ++u) {
+            if (offsets[u + 1] < offsets[u] || offsets[u + 1] > numEdges)
+                throw damaged(path, "its edge offsets are corrupt");
+            for (int e = offsets[u]; e < offsets[u + 1]; ++e)
+                tails[e] = u;
+        }
+        for (int e = 0; e < numEdges; ++e)
+            if (heads[e] < 0 || heads[e] >= numNodes || capacities[e] < 0)
+                throw damaged(path, "edge " + e + " is corrupt");
+        if (!keepsOrder)
+            return new FlowGraph(names, tails, heads, capacities, numEdges);
+
+        /* Put every edge back where it came from, checking that each place
+         * is filled exactly once.
+         */
+        int[] order = readInts(channel, orderAt, numEdges);
+        int[] originalTails = new int[numEdges];
+        int[] originalHeads = new int[numEdges];
+        int[] originalCapacities = new int[numEdges];
+        Arrays.fill(originalTails, -1);
+        for (int e = 0; e < numEdges; ++e) {
+            int original = order[e];
+            if (original < 0 || original >= numEdges || originalTails[original] >= 0)
+                throw damaged(path, "its edge order is corrupt");
+            originalTails[original] = tails[e];
+            originalHeads[original] = heads[e];
+            originalCapacities[original] = capacities[e];
+        }
+        return new FlowGraph(names, originalTails, originalHeads, originalCapacities, numEdges);
+    }
+
+    /**
+     * Writes a graph to the given path in the binary format.
+     *
+     * @param g The graph to write.
+     * @param path The path to write to.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(FlowGraph g, String path) throws IOException {
+        write(g, path, false);
+    }
+
+    /**
+     * Writes a graph to the given path in the binary format, recording the
+     * original order of its edges if keepOrder is set.
+     */
+    static void write(FlowGraph g, String path, boolean keepOrder) throws IOException {
+        int n = g.numNodes();
+        int m = g.numEdges();
+
+        /* Encode the names and lay out the name table. */
+        byte[][] encoded = new byte[n][];
+        int[] nameOffsets = new int[n + 1];
+        for (int id = 0; id < n; ++id) {
+            encoded[id] = g.name(id).getBytes(StandardCharsets.UTF_8);
+            nameOffsets[id + 1] = nameOffsets[id] + encoded[id].length;
+        }
+        int nameBytes = nameOffsets[n];
+
+        /* Group the edges by tail with a stable counting sort. */
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < m; ++e)
+            ++offsets[g.tail(e) + 1];
+        for (int u = 0; u < n; ++u)
+            offsets[u + 1] += offsets[u];
+        int[] heads = new int[m];
+        int[] capacities = new int[m];
+        int[] order = keepOrder ? new int[m] : null;
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < m; ++e) {
+            int slot = next[g.tail(e)]++;
+            heads[slot] = g.head(e);
+            capacities[slot] = g.capacity(e);
+            if (keepOrder)
+                order[slot] = e;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.WRITE,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buf.put(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(nameBytes)
+               .putInt(keepOrder ? KEEPS_ORDER : 0);
+            writeInts(channel, buf, nameOffsets, n + 1);
+            for (byte[] name: encoded) {
+                for (int i = 0; i < name.length; ) {
+                    if (!buf.hasRemaining()) drain(channel, buf);
+                    int count = Math.min(buf.remaining(), name.length - i);
+                    buf.put(name, i, count);
+                    i += count;
+                }
+            }
+            for (int i = nameBytes; i < padded(nameBytes); ++i) {
+                if (!buf.hasRemaining()) drain(channel, buf);
+                buf.put((byte) 0);
+            }
+            writeInts(channel, buf, offsets, n + 1);
+            writeInts(channel, buf, heads, m);
+            writeInts(channel, buf, capacities, m);
+            if (keepOrder)
+                writeInts(channel, buf, order, m);
+            drain(channel, buf);
+        }
+    }
+
+    /**
+     * Reads count ints starting at the given position of the file, mapping
+     * at most MAX_MAPPING bytes at a time.
+     */
+    static int[] readInts(FileChannel channel, long position, int count) throws IOException {
+        int[] result = new int[count];
+        int done = 0;
+        while (done < count) {
+            int chunk = Math.min(count - done, MAX_MAPPING / 4);
+            IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * done, 4L * chunk)
+                                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            ints.get(result, done, chunk);
+            done += chunk;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the first count entries of an array through the buffer,
+     * draining it to the channel whenever it fills.
+     */
+    private static void writeInts(FileChannel channel, ByteBuffer buf, int[] values, int count)
+        throws IOException {
+        int done = 0;
+        while (done < count) {
+            if (buf.remaining() < 4) drain(channel, buf);
+
+            /* Write ints from the current position of the byte buffer. */
+            IntBuffer ints = buf.asIntBuffer();
+            int chunk = Math.min(count - done, ints.remaining());
+            ints.put(values, done, chunk);
+            buf.position(buf.position() + 4 * chunk);
+            done += chunk;
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            channel.write(buf);
+        buf.clear();
+    }
+
+    /* Rounds a length up to a multiple of four bytes. */
+    private static long padded(int length) {
+        return (length + 3L) & ~3L;
+    }
+
+    private static IOException damaged(String path, String reason) {
+        return new IOException("Binary graph file " + path + " is damaged: " + reason + ".");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java BinaryGraphFormat input.txt [output]");
+            System.exit(1);
+        }
+        String output = args.length > 1 ? args[1] : args[0] + ".mfg";
+        write(EdgeListLoader.load(args[0]), output);
+    }
+}
@@ -1,113 +1,204 @@
 import java.io.*;
 import java.util.*;
 
-
+/*
+ * Generates random bipartite flow networks.  The source s feeds n nodes
+ * l1..ln on the source side, the sink t is fed by m nodes r1..rm on the sink
+ * side, and each pair (li, rj) is joined independently with probability
+ * maxProbability.  The edges come out in the order
+ *
+ *     s li c    for every i
+ *     li rj c   for every joined pair, in row-major order
+ *     rj t c    for every j
+ *
+ * The edges at s and t get capacities drawn uniformly from
+ * [minCapacity, maxCapacity].  A joined pair's capacity is scaled from the
+ * same random number that decided to join it, so it is drawn uniformly
+ * from the bottom maxProbability fraction of that range.
+ *
+ * Rather than deciding every pair up front, the generator streams the
+ * edges out in order to an EdgeSink and jumps straight from one joined pair
+ * to the next; the number of pairs in between is geometrically distributed.
+ * It uses O(1) memory beyond its output buffer when writing a file through
+ * an EdgeListWriter, and O(n + m + E) when building a FlowGraph in memory.
+ *
+ * Usage: java BipartiteGraph [-seed N] [-echo] n m maxProbability minCapacity maxCapacity file
+ *
+ * The FlowGraph classes live in the parent directory, so compile and run
+ * with it on the class path:
+ *
+ *     javac -cp .. BipartiteGraph.java
+ *     java -cp .:.. BipartiteGraph -seed 1 500 500 .2 25 100 bipartite_low_25.txt
+ */
 public class BipartiteGraph
 {
 	public static void main(String[] args) throws Exception
 	{
-		int n, m, maxCapacity, i, j, minCapacity;
-		double maxProbability, value, x;
-		System.out.println("\n\n---------------------------------------------------");
-		System.out.print("Enter number of nodes on the source side: \t");
-		n = GetInt();
-		System.out.print("Enter number of nodes on the sink side: \t");
-		m = GetInt();
-		System.out.print("Enter max probability: \t\t\t\t");
-		maxProbability = GetReal();
-		if(maxProbability > 1)
+		long seed = new Random().nextLong();
+		boolean echo = false;
+		int arg = 0;
+		for(; arg < args.length && args[arg].startsWith("-"); arg++)
 		{
-			System.out.println("Max probability should be less than or equal to 1");
-			return;
+			if(args[arg].equals("-seed") && arg + 1 < args.length)
+				seed = Long.parseLong(args[++arg]);
+			else if(args[arg].equals("-echo"))
+				echo = true;
+			else
+				break;
+		}
+		if(args.length - arg != 6)
+		{
+			System.err.println("Usage: java BipartiteGraph [-seed N] [-echo] n m maxProbability minCapacity maxCapacity file");
+			System.exit(1);
 		}
-		System.out.print("Enter minimum capacity: \t\t\t");
-		minCapacity = GetInt();
-		System.out.print("Enter maximum capacity: \t\t\t");
-		maxCapacity = GetInt();
-		String directory = System.getProperty("user.dir");
-		System.out.print("Enter the output file name: \t\t\t");
-		String fileName = GetString() + ".txt";	
-		System.out.println("---------------------------------------------------\n");
 
-		try
+		int n = Integer.parseInt(args[arg]);
+		int m = Integer.parseInt(args[arg + 1]);
+		double maxProbability = Double.parseDouble(args[arg + 2]);
+		int minCapacity = Integer.parseInt(args[arg + 3]);
+		int maxCapacity = Integer.parseInt(args[arg + 4]);
+		String fileName = args[arg + 5];
+		if(maxProbability > 1)
 		{
-			PrintWriter outFile = new  PrintWriter(new FileWriter(new File(directory, fileName)));
+			System.err.println("Max probability should be less than or equal to 1");
+			System.exit(1);
+		}
 
-			double[][] edge = new double[n][m];
-			for(i=0; i<n; i++)
-			{
-				for(j=0; j<m; j++)
-				{
-					value = Math.random();
-					if(value <= maxProbability)
-						edge[i][j] = value;
-					else
-						edge[i][j] = 0;
-				}
-			}
-			
-			System.out.println("-----------------------------------------");
-			System.out.println("\tSource\tSink\tCapacity");
-			System.out.println("-----------------------------------------");			
+		write(fileName, n, m, maxProbability, minCapacity, maxCapacity, seed, echo);
+	}
 
-			//computing the edges out of source
-			for (i = 0; i < n; i++)
-			{
-				x=Math.random();
-				//Compute a capacity in range of [minCapacity, maxCapacity]
-				value = Math.floor(minCapacity + (x * (maxCapacity - minCapacity + 1)));
-				System.out.println("\t" + "s" + "\tl" + (i + 1) + "\t" + (int)value);
-				outFile.println("s" + " l" + (i + 1) + " " + (int)value);
-			}
-			for(i=0; i<n; i++)
-			{
-				for(j=0; j<m; j++)
-				{				
-					if(edge[i][j] > 0)
-					{
-						edge[i][j] = Math.floor(minCapacity + (edge[i][j] * (maxCapacity - minCapacity + 1)));
-						System.out.println("\tl"+ (i+1) + "\tr" + (j+1) + "\t" + (int)edge[i][j]);
-						//computing for the vertices between source and sink and writing them to the output file
-						outFile.println("l"+ (i+1) + " r" + (j+1) + " " + (int)edge[i][j]);
-					}
-				}
-			}
-			//computing the edges into the sink
-			for (j=0; j < m; j++)
+	/**
+	 * Generates a graph and writes it to a file, one "tail head capacity"
+	 * line per edge.
+	 *
+	 * @param fileName The file to write.
+	 * @param echo Whether to copy every line to standard output as well.
+	 * @see #generate
+	 */
+	public static void write(String fileName, int n, int m, double maxProbability,
+			int minCapacity, int maxCapacity, long seed, boolean echo) throws IOException
+	{
+		try(final EdgeListWriter out = new EdgeListWriter(fileName, echo))
+		{
+			generate(n, m, maxProbability, minCapacity, maxCapacity, seed, (tail, head, capacity) ->
 			{
-				x=Math.random();
-				value = Math.floor(minCapacity + (x * (maxCapacity - minCapacity + 1)));
-				System.out.println("\tr" + (j+1) + "\t" + "t" + "\t" + (int)value);
-				outFile.println("r" + (j + 1) + " " + "t" + " " + (int)value);
-			}
+				writeNode(out, n, m, tail);
+				out.space();
+				writeNode(out, n, m, head);
+				out.space().number(capacity).endLine();
+			});
+		}
+	}
 
-			System.out.println("\n\nOutput is created at: \t" + directory + "\\" + fileName);
-			outFile.close();
+	/**
+	 * Generates a graph straight into memory.
+	 *
+	 * @return The generated graph.
+	 * @see #generate
+	 */
+	public static FlowGraph toFlowGraph(int n, int m, double maxProbability,
+			int minCapacity, int maxCapacity, long seed)
+	{
+		//Name the nodes in numbering order, so that the ids match.
+		double expected = n + m + (double) n * m * Math.min(Math.max(maxProbability, 0), 1);
+		FlowGraph.Builder builder = new FlowGraph.Builder((int) Math.min(expected, 1 << 30));
+		for(int node = 0; node <= n + m + 1; node++)
+			builder.node(nodeName(n, m, node));
+
+		try
+		{
+			generate(n, m, maxProbability, minCapacity, maxCapacity, seed, builder::addEdge);
 		}
-		catch(Exception ex)
+		catch(IOException ex)
 		{
-			System.out.println(ex);
+			//Adding to a builder can't fail this way.
+			throw new UncheckedIOException(ex);
 		}
+		return builder.build();
 	}
 
-	//helper functions
-	public static String GetString() throws IOException 
+	/**
+	 * Generates a graph and hands its edges to a sink in order.  The nodes
+	 * are numbered s = 0, li = i, rj = n + j and t = n + m + 1.
+	 *
+	 * @param n The number of nodes on the source side.
+	 * @param m The number of nodes on the sink side.
+	 * @param maxProbability The chance that any given pair (li, rj) is joined.
+	 * @param minCapacity The smallest capacity to give an edge.
+	 * @param maxCapacity The largest capacity to give an edge.
+	 * @param seed The seed for the random number generator.
+	 * @param sink Receives the edges.
+	 * @throws IllegalArgumentException If the capacity range is empty or
+	 *                                  includes negative capacities.
+	 */
+	public static void generate(int n, int m, double maxProbability, int minCapacity,
+			int maxCapacity, long seed, EdgeSink sink) throws IOException
 	{
-		BufferedReader stringIn = new BufferedReader (new
-			InputStreamReader(System.in));
-		return  stringIn.readLine();
+		if(minCapacity < 0 || maxCapacity < minCapacity)
+			throw new IllegalArgumentException("Capacities must satisfy 0 <= minCapacity <= maxCapacity.");
+
+		Random random = new Random(seed);
+		int range = maxCapacity - minCapacity + 1;
+
+		//computing the edges out of source
+		for(int i = 1; i <= n; i++)
+			sink.edge(0, i, minCapacity + random.nextInt(range));
+
+		//computing the edges between the two sides.  The number of pairs
+		//skipped before the next joined one is floor(ln(U) / ln(1 - p)) for
+		//U uniform on (0, 1].  log1p keeps ln(1 - p) from rounding to zero
+		//when p is tiny, and the skip is checked against the pairs left
+		//before it is added, so that k cannot overflow.
+		double p = Math.min(maxProbability, 1);
+		if(p > 0)
+		{
+			double logMiss = Math.log1p(-p);
+			long pairs = (long) n * m;
+			for(long k = 0; k < pairs; k++)
+			{
+				if(p < 1)
+				{
+					double skip = Math.floor(Math.log1p(-random.nextDouble()) / logMiss);
+					if(skip >= pairs - k)
+						break;
+					k += (long) skip;
+				}
+				double value = p * (1 - random.nextDouble());
+				int capacity = (int) Math.floor(minCapacity + value * range);
+				sink.edge(1 + (int) (k / m), n + 1 + (int) (k % m), capacity);
+			}
+		}
+
+		//computing the edges into the sink
+		for(int j = 1; j <= m; j++)
+			sink.edge(n + j, n + m + 1, minCapacity + random.nextInt(range));
 	}
 
-	public static int GetInt() throws IOException 
+	/**
+	 * Returns the name of a node in a graph with n and m nodes on its two
+	 * sides.
+	 */
+	public static String nodeName(int n, int m, int node)
 	{
-		String aux = GetString();
-		return Integer.parseInt(aux);
+		if(node == 0)
+			return "s";
+		if(node <= n)
+			return "l" + node;
+		if(node <= n + m)
+			return "r" + (node - n);
+		return "t";
 	}
 
-	public static double GetReal() throws IOException 
+	//Writes the name of a node without building a String for it.
+	private static void writeNode(EdgeListWriter out, int n, int m, int node) throws IOException
 	{
-		String  aux = GetString();
-		Double d  = new Double(aux);
-		return  d.doubleValue() ;
+		if(node == 0)
+			out.text('s');
+		else if(node <= n)
+			out.text('l').number(node);
+		else if(node <= n + m)
+			out.text('r').number(node - n);
+		else
+			out.text('t');
 	}
-}
\ No newline at end of file
+}
@@ -1,8 +1,2 @@
-java BipartiteGraph<< EOF
-500
-500
-.2
-25
-100
-bipartite_low_25
-EOF
\ No newline at end of file
+javac -cp .. BipartiteGraph.java
+java -cp .:.. BipartiteGraph -seed 25 500 500 .2 25 100 bipartite_low_25.txt
@@ -0,0 +1,112 @@
+/*****************************************************************************
+ * File: CompressedGraphCheck.java
+ *
+ * A consistency check for CompressedGraphFormat.  A compressed graph can
+ * reach the engines in two ways: decoded edge by edge by a Cursor straight
+ * into a CsrResidualGraph, as the harnesses do, or inflated into a FlowGraph
+ * first, as FlowGraph.load does.  Both must give every engine the same
+ * flow, and that flow must be the one found in the graph before it was
+ * compressed.
+ *
+ * For each graph the check writes the graph to a temporary compressed file
+ * (a graph that is already compressed is used as it is), opens it, builds a
+ * residual graph along each path, and runs every engine on both and on the
+ * original, reporting any flow that differs.
+ *
+ * Usage:
+ *
+ *     java CompressedGraphCheck [path ...]
+ *
+ * Each path may name a graph file or a directory, as for Benchmark; with no
+ * paths, the same four families are checked.  The exit status is 1 if any
+ * flow disagreed.
+ */
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*; // For ArrayList, Arrays, List, NoSuchElementException
+
+public final class CompressedGraphCheck {
+    public static void main(String[] args) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        for (String arg: args) {
+            if (arg.startsWith("-")) {
+                System.err.println("usage: java CompressedGraphCheck [path ...]");
+                System.exit(1);
+            }
+            paths.add(arg);
+        }
+        if (paths.isEmpty())
+            paths = Arrays.asList(Benchmark.DEFAULT_PATHS);
+
+        int checked = 0;
+        int failed = 0;
+        for (Path file: Benchmark.findGraphs(paths)) {
+            String path = file.toString();
+            FlowGraph g = FlowGraph.load(path);
+            try {
+                g.id("s");
+                g.id("t");
+            } catch (NoSuchElementException e) {
+                System.out.printf("%s skipped: %s%n", path, e.getMessage());
+                continue;
+            }
+
+            ++checked;
+            if (CompressedGraphFormat.isCompressed(path)) {
+                if (!check(path, g, path))
+                    ++failed;
+                continue;
+            }
+
+            Path compressed = Files.createTempFile("check", ".mfgc");
+            try {
+                CompressedGraphFormat.write(g, compressed.toString());
+                if (!check(path, g, compressed.toString()))
+                    ++failed;
+            } finally {
+                Files.deleteIfExists(compressed);
+            }
+        }
+
+        System.out.printf("%d graphs checked, %d failed%n", checked, failed);
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Checks that every engine finds the same flow in a graph along the
+     * cursor and inflate paths from its compressed form as in the graph
+     * itself, printing a line for each flow that doesn't match.
+     *
+     * @param label The name of the graph, for the report.
+     * @param g The graph, as loaded from its original file.
+     * @param compressedPath The path to the graph in compressed form.
+     * @return Whether every flow matched.
+     * @throws IOException If the compressed file cannot be read.
+     */
+    public static boolean check(String label, FlowGraph g, String compressedPath) throws IOException {
+        CompressedGraphFormat.Graph compressed = CompressedGraphFormat.open(compressedPath);
+        CsrResidualGraph original = new CsrResidualGraph(g);
+        CsrResidualGraph streamed = new CsrResidualGraph(compressed);
+        CsrResidualGraph inflated = new CsrResidualGraph(compressed.toFlowGraph());
+        int s = compressed.id("s");
+        int t = compressed.id("t");
+
+        boolean agreed = true;
+        for (MaxFlowEngine engine: MaxFlowEngine.values()) {
+            int expected = engine.solve(original, g.id("s"), g.id("t"));
+            int cursor = engine.solve(streamed, s, t);
+            int inflate = engine.solve(inflated, s, t);
+            if (cursor != expected || inflate != expected) {
+                System.out.printf("%s: %s found %d in the original, %d through the cursor "
+                                  + "and %d through the inflated graph%n",
+                                  label, engine.displayName(), expected, cursor, inflate);
+                agreed = false;
+            }
+            original.reset();
+            streamed.reset();
+            inflated.reset();
+        }
+        return agreed;
+    }
+}
@@ -0,0 +1,577 @@
+/*****************************************************************************
+ * File: CompressedGraphFormat.java
+ *
+ * A compressed binary file format for graphs, for storing large corpora of
+ * generated instances.  Edges are sorted by tail and then by head, which
+ * turns each node's list of neighbours into a short run of small gaps:
+ *
+ *     magic        The four bytes "MFGC".
+ *     version      The format version, currently 1.
+ *     numNodes     The number of nodes, n.
+ *     numEdges     The number of edges, m.
+ *     minCapacity  The smallest capacity of any edge.
+ *     capacityBits The number of bits needed for the largest capacity less
+ *                  minCapacity.
+ *     namesLength  The length in bytes of the name table, as a long.
+ *     adjacencyLength  The length in bytes of the adjacency lists, as a long.
+ *     names        For each node in id order, the length of its name as a
+ *                  varint followed by the name's UTF-8 bytes.
+ *     adjacency    For each node in id order, its out-degree as a varint,
+ *                  then the heads of its edges in increasing order: the
+ *                  first as a varint, each later one as a varint holding
+ *                  its gap from the one before.
+ *     capacities   Each edge's capacity less minCapacity in capacityBits
+ *                  bits, packed into little-endian longs in the order the
+ *                  edges appear in the adjacency lists.  This section
+ *                  starts on an eight-byte boundary.
+ *
+ * The fixed-width header fields are little-endian ints.  A varint holds an
+ * unsigned value seven bits at a time, low bits first, with the top bit of
+ * each byte set on every byte but the last.
+ *
+ * A Graph opened from one of these files is never inflated into objects.
+ * It maps the file and hands out Cursors, which decode the edges one at a
+ * time straight from the mapped bytes, so a CsrResidualGraph can be built
+ * from it directly; RunMaxFlow, Benchmark and CorpusRunner build the graph
+ * their engines solve this way.  FlowGraph.load also recognizes these
+ * files, and decodes them into a FlowGraph.  Each section is mapped as a whole, so no
+ * section may be 2GB or more.
+ *
+ * Run as a program, this class compresses graphs in either the text or the
+ * uncompressed binary format:
+ *
+ *     java CompressedGraphFormat input [output]
+ *
+ * The output defaults to the input's name with ".mfgc" added.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+public final class CompressedGraphFormat {
+    /* The first four bytes of every compressed graph file. */
+    static final byte[] MAGIC = { 'M', 'F', 'G', 'C' };
+
+    /* The version of the format written by this class. */
+    static final int VERSION = 1;
+
+    /* The size of the header in bytes. */
+    private static final int HEADER_BYTES = 40;
+
+    /* The size of the buffer used when writing. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Returns whether the file at the given path is a compressed graph file.
+     *
+     * @param path The path to the file.
+     * @return Whether the file starts with the compressed format's magic
+     *         number.
+     * @throws IOException If the file can't be read.
+     */
+    public static boolean isCompressed(String path) throws IOException {
+        return BinaryGraphFormat.startsWith(path, MAGIC);
+    }
+
+    /**
+     * A graph stored in a compressed graph file.  The edges are only
+     * decoded as they are read through a Cursor.
+     */
+    public static final class Graph {
+        private final int numNodes;
+        private final int numEdges;
+        private final int minCapacity;
+        private final int capacityBits;
+        private final NodeDictionary names;
+        private final MappedByteBuffer adjacency;
+        private final MappedByteBuffer capacities;
+
+        private Graph(int numNodes, int numEdges, int minCapacity, int capacityBits,
+                      NodeDictionary names, MappedByteBuffer adjacency,
+                      MappedByteBuffer capacities) {
+            this.numNodes = numNodes;
+            this.numEdges = numEdges;
+            this.minCapacity = minCapacity;
+            this.capacityBits = capacityBits;
+            this.names = names;
+            this.adjacency = adjacency;
+            this.capacities = capacities;
+        }
+
+        /**
+         * Returns the number of nodes in the graph.
+         *
+         * @return The number of nodes.
+         */
+        public int numNodes() {
+            return numNodes;
+        }
+
+        /**
+         * Returns the number of edges in the graph.
+         *
+         * @return The number of edges.
+         */
+        public int numEdges() {
+            return numEdges;
+        }
+
+        /**
+         * Returns the name of the node with the given id.
+         *
+         * @param id The id of the node.
+         * @return The name of that node.
+         */
+        public String name(int id) {
+            return names.name(id);
+        }
+
+        /**
+         * Returns the id of the node with the given name, or -1 if there is
+         * no such node.
+         *
+         * @param name The name of the node.
+         * @return The id of that node, or -1.
+         */
+        public int find(String name) {
+            return names.find(name);
+        }
+
+        /**
+         * Returns the id of the node with the given name.
+         *
+         * @param name The name of the node.
+         * @return The id of that node.
+         * @throws NoSuchElementException If no node has that name.
+         */
+        public int id(String name) {
+            int id = find(name);
+            if (id < 0)
+                throw new NoSuchElementException("Node " + name + " does not exist.");
+            return id;
+        }
+
+        /**
+         * Returns a cursor positioned before the first edge.
+         *
+         * @return A new cursor over the edges of the graph.
+         */
+        public Cursor cursor() {
+            return new Cursor(this);
+        }
+
+        /**
+         * Decodes the whole graph into a FlowGraph.
+         *
+         * @return A FlowGraph holding the same nodes and edges.
+         */
+        public FlowGraph toFlowGraph() {
+            int[] tails = new int[numEdges];
+            int[] heads = new int[numEdges];
+            int[] caps = new int[numEdges];
+            Cursor cursor = cursor();
+            for (int e = 0; cursor.next(); ++e) {
+                tails[e] = cursor.tail();
+                heads[e] = cursor.head();
+                caps[e] = cursor.capacity();
+            }
+            return new FlowGraph(names, tails, heads, caps, numEdges);
+        }
+    }
+
+    /**
+     * A position in the edges of a compressed graph.  Each call to next()
+     * decodes one more edge; the edges come out grouped by tail and in
+     * increasing order of head within each group.  A cursor allocates
+     * nothing as it moves.
+     */
+    public static final class Cursor {
+        private final Graph graph;
+        private int position = 0;
+        private int edge = -1;
+        private int tail = -1;
+        private int remaining = 0;
+        private int head = 0;
+
+        private Cursor(Graph graph) {
+            this.graph = graph;
+        }
+
+        /**
+         * Moves to the next edge.
+         *
+         * @return Whether there was another edge.
+         */
+        public boolean next() {
+            if (edge + 1 >= graph.numEdges) return false;
+            ++edge;
+
+            /* Skip ahead to the next node that has edges left, reading the
+             * first head of its list in full.
+             */
+            if (remaining == 0) {
+                do {
+                    ++tail;
+                    remaining = readVarint();
+                } while (remaining == 0);
+                head = readVarint();
+            } else {
+                head += readVarint();
+            }
+            --remaining;
+            return true;
+        }
+
+        /**
+         * Returns the index of the current edge, in the order the edges are
+         * stored.
+         *
+         * @return The index of the current edge.
+         */
+        public int edge() {
+            return edge;
+        }
+
+        /**
+         * Returns the start node of the current edge.
+         *
+         * @return The id of the start node.
+         */
+        public int tail() {
+            return tail;
+        }
+
+        /**
+         * Returns the end node of the current edge.
+         *
+         * @return The id of the end node.
+         */
+        public int head() {
+            return head;
+        }
+
+        /**
+         * Returns the capacity of the current edge.
+         *
+         * @return The capacity of the current edge.
+         */
+        public int capacity() {
+            int bits = graph.capacityBits;
+            if (bits == 0) return graph.minCapacity;
+
+            /* The value may straddle two longs. */
+            long bit = (long) edge * bits;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long value = graph.capacities.getLong(8 * word) >>> shift;
+            if (shift + bits > 64)
+                value |= graph.capacities.getLong(8 * (word + 1)) << (64 - shift);
+            return graph.minCapacity + (int) (value & ((1L << bits) - 1));
+        }
+
+        private int readVarint() {
+            int result = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = graph.adjacency.get(position++);
+                result |= (b & 0x7F) << shift;
+                if (b >= 0) return result;
+            }
+        }
+    }
+
+    /**
+     * Opens the compressed graph file at the given path.  The name table is
+     * read in full; the edges are left in the mapped file.
+     *
+     * @param path The path to the file.
+     * @return The graph stored in that file.
+     * @throws IOException If the file can't be read, isn't a compressed
+     *                     graph file, or is damaged.
+     */
+    public static Graph open(String path) throws IOException {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.PARSE);
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return read(channel, path);
+        } finally {
+            timer.exit(outer);
+        }
+    }
+
+    /**
+     * Loads the compressed graph file at the given path into a FlowGraph.
+     *
+     * @param path The path to the file.
+     * @return The graph stored in that file.
+     * @throws IOException If the file can't be read, isn't a compressed
+     *                     graph file, or is damaged.
+     */
+    public static FlowGraph load(String path) throws IOException {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.PARSE);
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return read(channel, path).toFlowGraph();
+        } finally {
+            timer.exit(outer);
+        }
+    }
+
+    /**
+     * Does the work of open().
+     */
+    private static Graph read(FileChannel channel, String path) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES)
+            throw damaged(path, "it is too short");
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                                   .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < MAGIC.length; ++i)
+            if (header.get(i) != MAGIC[i])
+                throw new IOException("File " + path + " is not a compressed graph file.");
+        int version = header.getInt(4);
+        if (version != VERSION)
+            throw new IOException("File " + path + " has format version " + version
+                                  + "; only version " + VERSION + " is supported.");
+        int numNodes = header.getInt(8);
+        int numEdges = header.getInt(12);
+        int minCapacity = header.getInt(16);
+        int capacityBits = header.getInt(20);
+        long namesLength = header.getLong(24);
+        long adjacencyLength = header.getLong(32);
+        if (numNodes < 0 || numEdges < 0 || minCapacity < 0 || capacityBits < 0 || capacityBits > 31
+            || namesLength < 0 || namesLength > Integer.MAX_VALUE
+            || adjacencyLength < 0 || adjacencyLength > Integer.MAX_VALUE)
+            throw damaged(path, "its header is corrupt");
+
+        long adjacencyAt = HEADER_BYTES + namesLength;
+        long capacitiesAt = (adjacencyAt + adjacencyLength + 7) & ~7L;
+        long capacityBytes = 8 * (((long) numEdges * capacityBits + 63) >>> 6);
+        if (capacityBytes > Integer.MAX_VALUE || capacitiesAt + capacityBytes != size)
+            throw damaged(path, "its length doesn't match its header");
+
+        /* Rebuild the name dictionary straight from the mapped bytes. */
+        MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, namesLength);
+        NodeDictionary names = new NodeDictionary(numNodes, (int) namesLength);
+        int position = 0;
+        for (int id = 0; id < numNodes; ++id) {
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position >= namesLength || shift > 28)
+                    throw damaged(path, "its name table is corrupt");
+                byte b = table.get(position++);
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            if (length < 0 || length > namesLength - position)
+                throw damaged(path, "its name table is corrupt");
+            if (names.intern(table, position, length) != id)
+                throw damaged(path, "it names a node twice");
+            position += length;
+        }
+
+        MappedByteBuffer adjacency = channel.map(FileChannel.MapMode.READ_ONLY, adjacencyAt, adjacencyLength);
+        MappedByteBuffer capacities = channel.map(FileChannel.MapMode.READ_ONLY, capacitiesAt, capacityBytes);
+        capacities.order(ByteOrder.LITTLE_ENDIAN);
+        Graph graph = new Graph(numNodes, numEdges, minCapacity, capacityBits, names, adjacency, capacities);
+        validate(graph, path);
+        return graph;
+    }
+
+    /**
+     * Walks every adjacency list once to make sure the cursors will never
+     * run off the end of the mapped bytes or produce an out-of-range node.
+     */
+    private static void validate(Graph graph, String path) throws IOException {
+        int[] position = { 0 };
+        long edges = 0;
+        for (int u = 0; u < graph.numNodes; ++u) {
+            long degree = checkedVarint(graph.adjacency, position, path, u);
+            long head = 0;
+            for (long i = 0; i < degree; ++i) {
+                long gap = checkedVarint(graph.adjacency, position, path, u);
+                head = (i == 0) ? gap : head + gap;
+                if (head >= graph.numNodes)
+                    throw damaged(path, "the edges of node " + u + " are corrupt");
+            }
+            edges += degree;
+        }
+        if (edges != graph.numEdges || position[0] != graph.adjacency.limit())
+            throw damaged(path, "its edge count doesn't match its header");
+    }
+
+    /* Reads a varint at position[0] and moves past it, failing rather than
+     * running off the end of the buffer or overflowing an int.
+     */
+    private static int checkedVarint(ByteBuffer buf, int[] position, String path, int node)
+        throws IOException {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position[0] >= buf.limit() || shift > 28)
+                throw damaged(path, "the edges of node " + node + " are corrupt");
+            byte b = buf.get(position[0]++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        if (result < 0)
+            throw damaged(path, "the edges of node " + node + " are corrupt");
+        return result;
+    }
+
+    /**
+     * Writes a graph to the given path in the compressed format.
+     *
+     * @param g The graph to write.
+     * @param path The path to write to.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(FlowGraph g, String path) throws IOException {
+        int n = g.numNodes();
+        int m = g.numEdges();
+
+        /* Sort the edges by tail and then by head with two stable counting
+         * sorts, the first on head and the second on tail.
+         */
+        int[] byHead = sortBy(m, n, g.headArray(), null);
+        int[] order = sortBy(m, n, g.tailArray(), byHead);
+
+        /* Find the range of the capacities. */
+        int minCapacity = Integer.MAX_VALUE;
+        int maxCapacity = 0;
+        for (int e = 0; e < m; ++e) {
+            minCapacity = Math.min(minCapacity, g.capacity(e));
+            maxCapacity = Math.max(maxCapacity, g.capacity(e));
+        }
+        if (m == 0) minCapacity = 0;
+        int capacityBits = 32 - Integer.numberOfLeadingZeros(maxCapacity - minCapacity);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            /* The header is written last, once the section lengths are
+             * known; leave room for it.
+             */
+            channel.position(HEADER_BYTES);
+
+            long namesLength = 0;
+            for (int id = 0; id < n; ++id) {
+                byte[] name = g.name(id).getBytes(StandardCharsets.UTF_8);
+                namesLength += putVarint(channel, buf, name.length);
+                for (int i = 0; i < name.length; ) {
+                    if (!buf.hasRemaining()) drain(channel, buf);
+                    int count = Math.min(buf.remaining(), name.length - i);
+                    buf.put(name, i, count);
+                    i += count;
+                }
+                namesLength += name.length;
+            }
+
+            long adjacencyLength = 0;
+            int next = 0;
+            for (int u = 0; u < n; ++u) {
+                int start = next;
+                while (next < m && g.tail(order[next]) == u)
+                    ++next;
+                adjacencyLength += putVarint(channel, buf, next - start);
+                int previous = 0;
+                for (int i = start; i < next; ++i) {
+                    int head = g.head(order[i]);
+                    adjacencyLength += putVarint(channel, buf, head - previous);
+                    previous = head;
+                }
+            }
+            for (long end = HEADER_BYTES + namesLength + adjacencyLength; (end & 7) != 0; ++end) {
+                if (!buf.hasRemaining()) drain(channel, buf);
+                buf.put((byte) 0);
+            }
+
+            /* Pack the capacities into longs, low bits first. */
+            long word = 0;
+            int used = 0;
+            for (int i = 0; i < m && capacityBits > 0; ++i) {
+                long value = g.capacity(order[i]) - minCapacity;
+                word |= value << used;
+                used += capacityBits;
+                if (used >= 64) {
+                    putLong(channel, buf, word);
+                    used -= 64;
+                    word = (used == 0) ? 0 : value >>> (capacityBits - used);
+                }
+            }
+            if (used > 0)
+                putLong(channel, buf, word);
+            drain(channel, buf);
+
+            buf.put(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(minCapacity)
+               .putInt(capacityBits).putLong(namesLength).putLong(adjacencyLength);
+            buf.flip();
+            channel.write(buf, 0);
+        }
+    }
+
+    /**
+     * Returns the indices 0 through m - 1 stably sorted by key, where the
+     * keys lie in [0, n).  If within is not null, the indices in within are
+     * sorted instead, keeping their relative order among equal keys.
+     */
+    private static int[] sortBy(int m, int n, int[] key, int[] within) {
+        int[] start = new int[n + 1];
+        for (int e = 0; e < m; ++e)
+            ++start[key[e] + 1];
+        for (int u = 0; u < n; ++u)
+            start[u + 1] += start[u];
+        int[] result = new int[m];
+        for (int i = 0; i < m; ++i) {
+            int e = (within == null) ? i : within[i];
+            result[start[key[e]]++] = e;
+        }
+        return result;
+    }
+
+    /* Writes a non-negative int as a varint and returns its length. */
+    private static int putVarint(FileChannel channel, ByteBuffer buf, int value) throws IOException {
+        if (buf.remaining() < 5) drain(channel, buf);
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            ++length;
+        }
+        buf.put((byte) value);
+        return length;
+    }
+
+    private static void putLong(FileChannel channel, ByteBuffer buf, long value) throws IOException {
+        if (buf.remaining() < 8) drain(channel, buf);
+        buf.putLong(value);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            channel.write(buf);
+        buf.clear();
+    }
+
+    private static IOException damaged(String path, String reason) {
+        return new IOException("Compressed graph file " + path + " is damaged: " + reason + ".");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java CompressedGraphFormat input [output]");
+            System.exit(1);
+        }
+        String output = args.length > 1 ? args[1] : args[0] + ".mfgc";
+        write(FlowGraph.load(args[0]), output);
+    }
+}
@@ -0,0 +1,337 @@
+/*****************************************************************************
+ * File: CorpusRunner.java
+ *
+ * Runs every engine over a corpus of graph files inside a single JVM and
+ * writes the results as one CSV file.  Each graph is loaded and solved with
+ * the same warmup and repetition scheme as Benchmark, so no measurement pays
+ * for JVM startup or runs in cold, interpreted code.
+ *
+ * The output has one row per graph and engine, plus a row with the engine
+ * "load" for the time taken to load the graph, and the following columns:
+ *
+ *   file       - The path of the graph file.
+ *   family     - The family of generator that produced it (e.g. "mesh").
+ *   variant    - The variant within the family (e.g. "low" or "highrow").
+ *   parameter  - The number the file name ends in; for the generated
+ *                families, the low end of the capacity range.
+ *   n, m       - The number of nodes and edges in the graph.
+ *   engine     - The engine that was run.
+ *   flow       - The value of the max flow found (empty for "load").
+ *   runs       - The number of timed runs.
+ *   mean_ms, error_ms, min_ms, p25_ms, median_ms, p75_ms, p90_ms, p99_ms,
+ *   max_ms     - Statistics of the timed runs, in milliseconds, where the
+ *                error is the 99% confidence half-width of the mean.
+ *   alloc_bytes
+ *              - The bytes allocated by the last timed run (empty for
+ *                "load").
+ *   augmenting_paths, arcs_scanned, saturating_pushes, nonsaturating_pushes,
+ *   relabels, gap_relabels, global_relabels, scaling_phases
+ *              - The SolverStats counters for the last timed run (empty
+ *                for "load").
+ *   retained_flowgraph_bytes, retained_csrresidualgraph_bytes,
+ *   retained_flownetwork_bytes, retained_residualgraph_bytes,
+ *   retained_simplegraph_bytes
+ *              - The heap retained by each representation of the graph
+ *                (only on the "load" row, and only when running on a
+ *                single thread, since the measurement covers the whole
+ *                heap).
+ *
+ * The family, variant and parameter are parsed from the file name, so
+ * "bipartite_low_35.txt" is family "bipartite", variant "low", parameter 35,
+ * and "fixedDegreeHigh5.txt" is family "fixedDegree", variant "high",
+ * parameter 5.  A name that doesn't fit the pattern is reported with the
+ * whole name as its family.  plots/make_plot.r reads this file directly.
+ *
+ * Usage:
+ *
+ *     java CorpusRunner [-warmup N] [-runs N] [-engines name,name,...]
+ *                       [-threads N] [-memory MB] [-cache dir] [-cache-size MB]
+ *                       [-out file.csv] [path ...]
+ *
+ * Paths are expanded as in Benchmark, and default to the same four families.
+ * -cache and -cache-size load the graphs through a GraphCache, as in
+ * Benchmark, which lets repeated sweeps of the same corpus skip parsing.
+ * Without -out the CSV is written to standard output.  Progress is reported
+ * on standard error.
+ *
+ * Timing the load of a graph and timing each engine on it are independent
+ * jobs, and with -threads N they run concurrently on a pool of N workers.
+ * To keep the heap bounded, a job is only started once its estimated
+ * footprint (a fixed multiple of the input file's size) fits within the
+ * -memory budget, which defaults to half the maximum heap; a job larger than
+ * the whole budget runs alone.  Rows are always written in the same order
+ * as a sequential run, whatever order the jobs finish in.  Concurrent jobs
+ * compete for caches and memory bandwidth, so the default of one thread
+ * gives the cleanest timings and more threads trade some accuracy for a
+ * much shorter sweep.
+ */
+import java.io.*;
+import java.nio.file.*;
+import java.util.*; // For ArrayList, List, Locale
+import java.util.concurrent.*; // For ExecutorService, Future, Semaphore
+import java.util.regex.*; // For Matcher, Pattern
+
+public final class CorpusRunner {
+    private static final String HEADER = "file,family,variant,parameter,n,m,engine,flow,runs,"
+        + "mean_ms,error_ms,min_ms,p25_ms,median_ms,p75_ms,p90_ms,p99_ms,max_ms,"
+        + "alloc_bytes," + SolverStats.CSV_HEADER + retainedHeader();
+
+    /* A file name is a stem followed by an optional underscore and a number,
+     * and the stem is a family followed by a variant, separated either by an
+     * underscore or by the change to an upper-case letter.
+     */
+    private static final Pattern NAME = Pattern.compile("(.*?)_?(\\d+)");
+    private static final Pattern STEM = Pattern.compile("(.+?)(?:_([^_]+)|([A-Z][a-z]*))");
+
+    /* The estimated peak heap use of a job, per byte of input file.  A line
+     * of input is about ten bytes and becomes one edge, which costs 12 bytes
+     * in the FlowGraph (plus up to as much again while the loader's arrays
+     * grow) and 36 bytes in the residual graph, with room to spare for the
+     * engines' per-node arrays.
+     */
+    private static final int BYTES_PER_INPUT_BYTE = 8;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int warmup = Benchmark.DEFAULT_WARMUP;
+        int runs = Benchmark.DEFAULT_RUNS;
+        int threads = 1;
+        long memory = Runtime.getRuntime().maxMemory() / 2;
+        List<MaxFlowEngine> engines = Arrays.asList(MaxFlowEngine.values());
+        String out = null;
+        String cache = null;
+        long cacheBytes = GraphCache.DEFAULT_MAX_BYTES;
+        List<String> paths = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-warmup") && i + 1 < args.length) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-runs") && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-engines") && i + 1 < args.length) {
+                engines = new ArrayList<MaxFlowEngine>();
+                for (String name: args[++i].split(","))
+                    engines.add(MaxFlowEngine.forName(name));
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-memory") && i + 1 < args.length) {
+                memory = Long.parseLong(args[++i]) << 20;
+            } else if (args[i].equals("-out") && i + 1 < args.length) {
+                out = args[++i];
+            } else if (args[i].equals("-cache") && i + 1 < args.length) {
+                cache = args[++i];
+            } else if (args[i].equals("-cache-size") && i + 1 < args.length) {
+                cacheBytes = Long.parseLong(args[++i]) << 20;
+            } else if (args[i].startsWith("-")) {
+                System.err.println("usage: java CorpusRunner [-warmup N] [-runs N] "
+                                   + "[-engines name,name,...] [-threads N] [-memory MB] "
+                                   + "[-cache dir] [-cache-size MB] [-out file.csv] [path ...]");
+                System.exit(1);
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (runs < 1)
+            throw new IllegalArgumentException("At least one run is required.");
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is required.");
+        if (cache != null)
+            GraphCache.install(new GraphCache(cache, cacheBytes));
+        if (paths.isEmpty())
+            paths = Arrays.asList(Benchmark.DEFAULT_PATHS);
+
+        /* Build the jobs in output order: for each graph, the load timing
+         * followed by each engine.
+         */
+        List<Path> files = Benchmark.findGraphs(paths);
+        List<Job> jobs = new ArrayList<Job>();
+        for (Path file: files) {
+            jobs.add(new Job(file, null, warmup, runs, threads == 1));
+            for (MaxFlowEngine engine: engines)
+                jobs.add(new Job(file, engine, warmup, runs, false));
+        }
+
+        /* Run the jobs on the pool, admitting each only once its estimated
+         * footprint fits in the memory budget.  Permits are counted in KB.
+         * A job larger than the whole budget waits for every permit and so
+         * runs alone.
+         */
+        int budget = (int) Math.max(1, Math.min(memory >> 10, Integer.MAX_VALUE));
+        Semaphore admission = new Semaphore(budget, true);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+        for (Job job: jobs) {
+            int cost = (int) Math.max(1, Math.min(budget, job.footprint() >> 10));
+            results.add(pool.submit(() -> {
+                admission.acquire(cost);
+                try {
+                    return job.run();
+                } finally {
+                    admission.release(cost);
+                }
+            }));
+        }
+        pool.shutdown();
+
+        /* Write the results in job order, whatever order they finish in. */
+        try (PrintWriter writer = out == null
+                 ? new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)))
+                 : new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+            writer.println(HEADER);
+            for (int i = 0; i < jobs.size(); ++i) {
+                List<String> rows;
+                try {
+                    rows = results.get(i).get();
+                } catch (ExecutionException e) {
+                    pool.shutdownNow();
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                }
+                System.err.printf("[%d/%d] %s%n", i + 1, jobs.size(), jobs.get(i));
+                for (String row: rows)
+                    writer.println(row);
+                writer.flush();
+            }
+        }
+    }
+
+    /**
+     * One unit of work: timing either the load of a graph or one engine
+     * solving it.  Every job loads its own copy of the graph, so jobs share
+     * no mutable state and can run on any thread.
+     */
+    private static final class Job {
+        private final Path file;
+        private final MaxFlowEngine engine;
+        private final int warmup;
+        private final int runs;
+        private final boolean footprints;
+
+        /* A null engine means the job times loading the graph, and measures
+         * the footprint of each representation if footprints is set.
+         */
+        Job(Path file, MaxFlowEngine engine, int warmup, int runs, boolean footprints) {
+            this.file = file;
+            this.engine = engine;
+            this.warmup = warmup;
+            this.runs = runs;
+            this.footprints = footprints;
+        }
+
+        /* Estimates the peak heap use of the job, in bytes. */
+        long footprint() throws IOException {
+            return Files.size(file) * BYTES_PER_INPUT_BYTE;
+        }
+
+        /* Runs the job, producing its CSV rows.  A graph without nodes named
+         * s and t produces no rows.
+         */
+        List<String> run() throws IOException {
+            List<String> rows = new ArrayList<String>();
+            String path = file.toString();
+            Samples load = engine == null ? Benchmark.measureLoad(path, warmup, runs) : null;
+
+            /* An engine job on a compressed graph never inflates it; the
+             * residual graph is decoded straight from the mapped file.
+             */
+            CompressedGraphFormat.Graph compressed = null;
+            if (engine != null && CompressedGraphFormat.isCompressed(path))
+                compressed = CompressedGraphFormat.open(path);
+            FlowGraph g = compressed == null ? FlowGraph.load(path) : null;
+
+            int s, t;
+            try {
+                s = compressed != null ? compressed.id("s") : g.id("s");
+                t = compressed != null ? compressed.id("t") : g.id("t");
+            } catch (NoSuchElementException e) {
+                if (engine == null)
+                    System.err.println("skipping " + path + ": " + e.getMessage());
+                return rows;
+            }
+
+            int n = compressed != null ? compressed.numNodes() : g.numNodes();
+            int m = compressed != null ? compressed.numEdges() : g.numEdges();
+            String prefix = describe(file) + "," + n + "," + m + ",";
+            if (engine == null) {
+                StringBuilder retained = new StringBuilder();
+                if (footprints) {
+                    for (long bytes: Benchmark.measureFootprints(path, g).values())
+                        retained.append(',').append(bytes);
+                } else {
+                    for (int i = 0; i < Benchmark.REPRESENTATIONS.length; ++i)
+                        retained.append(',');
+                }
+                rows.add(prefix + "load,," + format(load) + ",,,,,,,,," + retained);
+            } else {
+                CsrResidualGraph residual = Benchmark.residualGraph(g, compressed);
+                Benchmark.Measurement result =
+                    Benchmark.measureSolve(engine, residual, s, t, warmup, runs);
+                StringBuilder empty = new StringBuilder();
+                for (int i = 0; i < Benchmark.REPRESENTATIONS.length; ++i)
+                    empty.append(',');
+                rows.add(prefix + quote(engine.displayName()) + "," + result.flow() + ","
+                         + format(result.samples()) + "," + result.allocatedBytes() + ","
+                         + result.stats().toCsv() + empty);
+            }
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return file + " " + (engine == null ? "load" : engine.displayName());
+        }
+    }
+
+    /* Returns the headers of the retained-size columns, each preceded by a
+     * comma.
+     */
+    private static String retainedHeader() {
+        StringBuilder result = new StringBuilder();
+        for (String name: Benchmark.REPRESENTATIONS)
+            result.append(",retained_").append(name.toLowerCase(Locale.ROOT)).append("_bytes");
+        return result.toString();
+    }
+
+    /* Returns the file, family, variant and parameter columns for a file. */
+    private static String describe(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".txt"))
+            name = name.substring(0, name.length() - 4);
+
+        String family = name;
+        String variant = "";
+        String parameter = "";
+        Matcher m = NAME.matcher(name);
+        if (m.matches() && !m.group(1).isEmpty()) {
+            parameter = m.group(2);
+            family = m.group(1);
+            Matcher stem = STEM.matcher(family);
+            if (stem.matches()) {
+                family = stem.group(1);
+                variant = (stem.group(2) != null ? stem.group(2) : stem.group(3)).toLowerCase(Locale.ROOT);
+            }
+        }
+        return quote(file.toString()) + "," + quote(family) + "," + quote(variant) + "," + parameter;
+    }
+
+    /* Returns the run count and timing columns for a set of samples. */
+    private static String format(Samples samples) {
+        double[] values = {
+            samples.mean(), samples.errorMargin(), samples.min(), samples.percentile(25),
+            samples.median(), samples.percentile(75), samples.percentile(90),
+            samples.percentile(99), samples.max()
+        };
+        StringBuilder result = new StringBuilder();
+        result.append(samples.count());
+        for (double value: values)
+            result.append(String.format(Locale.ROOT, ",%.4f", value / 1e6));
+        return result.toString();
+    }
+
+    /* Quotes a CSV field if it contains anything that needs quoting. */
+    private static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0)
+            return field;
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+}
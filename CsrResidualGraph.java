@@ -0,0 +1,400 @@
+/*****************************************************************************
+ * File: CsrResidualGraph.java
+ *
+ * A residual graph stored in compressed-sparse-row (CSR) form.  Like
+ * ResidualGraph, every edge (u, v) of the input contributes a forward arc
+ * u -> v whose residual capacity is the capacity of the edge less its flow,
+ * and a reverse arc v -> u whose residual capacity is the flow on the edge.
+ * Unlike ResidualGraph, there is no object per arc.  Arcs are numbered
+ * 0 through 2m - 1 and are described by parallel int arrays:
+ *
+ *   heads[a]    - The node arc a points to.
+ *   reverse[a]  - The arc running the opposite way from arc a.
+ *   residual[a] - The remaining capacity of arc a.
+ *   capacity[a] - The capacity of arc a when no flow is present (the edge's
+ *                 capacity for a forward arc, zero for a reverse arc).
+ *
+ * The arcs leaving node u are numbered contiguously, from firstArc(u) up to
+ * (but not including) endArc(u), so a scan over a node's arcs is a linear
+ * walk through memory.  The graph is built in O(n + m) time by a counting
+ * sort on the tail of each arc, which for large graphs is spread over the
+ * common ForkJoinPool.
+ *
+ * Nodes are identified by the same dense ids as the FlowGraph the residual
+ * graph was built from.
+ */
+import java.util.*; // For Arrays, List, Map
+import java.util.concurrent.*; // For ForkJoinPool
+import java.util.stream.*; // For IntStream
+
+public final class CsrResidualGraph {
+    /* Graphs with at least this many edges are built in parallel. */
+    private static final int PARALLEL_EDGES = 1 << 20;
+
+    private final int numNodes;
+
+    /* The arcs leaving node u are arcs offsets[u] through offsets[u + 1] - 1. */
+    private final int[] offsets;
+
+    /* The per-arc data, as described above. */
+    private final int[] heads;
+    private final int[] reverse;
+    private final int[] residual;
+    private final int[] capacity;
+
+    /* The forward arc for each edge of the original graph. */
+    private final int[] edgeArcs;
+
+    /**
+     * Constructs a residual graph for the given graph with no flow on it.
+     *
+     * @param g The graph from which the residual graph should be built.
+     */
+    public CsrResidualGraph(FlowGraph g) {
+        this(g.numNodes(), g.numEdges(), g.tailArray(), g.headArray(), g.capacityArray());
+    }
+
+    /**
+     * Constructs a residual graph with no flow on it for the graph whose
+     * i-th edge runs from tails[i] to heads[i] with capacity capacities[i].
+     * Only the first numEdges entries of each array are read.
+     *
+     * @param numNodes The number of nodes in the graph.
+     * @param numEdges The number of edges in the graph.
+     * @param tails The start node of each edge.
+     * @param heads The end node of each edge.
+     * @param capacities The capacity of each edge.
+     */
+    public CsrResidualGraph(int numNodes, int numEdges, int[] tails, int[] heads, int[] capacities) {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.RESIDUAL);
+        this.numNodes = numNodes;
+        int m = numEdges;
+
+        offsets = new int[numNodes + 1];
+        this.heads = new int[2 * m];
+        reverse = new int[2 * m];
+        residual = new int[2 * m];
+        capacity = new int[2 * m];
+        edgeArcs = new int[m];
+
+        /* Big graphs are built on every core, in the same order. */
+        int blocks = (m < PARALLEL_EDGES) ? 1
+            : (int) Math.min(ForkJoinPool.getCommonPoolParallelism(), 2L * m / Math.max(1, numNodes));
+        if (blocks > 1) {
+            buildInParallel(blocks, m, tails, heads, capacities);
+            timer.exit(outer);
+            return;
+        }
+
+        /* Count the arcs leaving each node: one for every edge that starts
+         * there and one for every edge that ends there.  The counts are
+         * shifted up by one slot so that the prefix sum below leaves the
+         * start of each node's run in offsets[u].
+         */
+        for (int e = 0; e < m; ++e) {
+            ++offsets[tails[e] + 1];
+            ++offsets[heads[e] + 1];
+        }
+        for (int u = 0; u < numNodes; ++u)
+            offsets[u + 1] += offsets[u];
+
+        /* Scatter each edge's forward and reverse arcs into place, linking
+         * the two together.
+         */
+        int[] next = Arrays.copyOf(offsets, numNodes);
+        for (int e = 0; e < m; ++e) {
+            int forward = next[tails[e]]++;
+            int backward = next[heads[e]]++;
+
+            this.heads[forward] = heads[e];
+            this.heads[backward] = tails[e];
+            reverse[forward] = backward;
+            reverse[backward] = forward;
+            capacity[forward] = capacities[e];
+            residual[forward] = capacities[e];
+            edgeArcs[e] = forward;
+        }
+        timer.exit(outer);
+    }
+
+    /**
+     * Does the work of the constructor on the common ForkJoinPool, for a
+     * graph whose edges are split into the given number of blocks.  Each
+     * block counts its own arcs at every node, and a prefix sum over the
+     * nodes, and over the blocks within each node, tells each block where
+     * its arcs go.  The blocks then scatter their edges side by side, and
+     * every node's arcs come out in the same order as in a sequential
+     * build.  The per-block counts cost blocks * n ints, which the caller
+     * keeps within the size of one of the arc arrays.
+     */
+    private void buildInParallel(int blocks, int m, int[] tails, int[] edgeHeads, int[] capacities) {
+        int[][] next = new int[blocks][];
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int[] count = new int[numNodes];
+            for (int e = firstOf(b, blocks, m); e < firstOf(b + 1, blocks, m); ++e) {
+                ++count[tails[e]];
+                ++count[edgeHeads[e]];
+            }
+            next[b] = count;
+        });
+
+        /* Turn each block's counts into offsets within its node's run, and
+         * total them into the counts for the prefix sum over the nodes.
+         */
+        IntStream.range(0, blocks).parallel().forEach(range -> {
+            for (int u = firstOf(range, blocks, numNodes); u < firstOf(range + 1, blocks, numNodes); ++u) {
+                int total = 0;
+                for (int b = 0; b < blocks; ++b) {
+                    int count = next[b][u];
+                    next[b][u] = total;
+                    total += count;
+                }
+                offsets[u + 1] = total;
+            }
+        });
+        Arrays.parallelPrefix(offsets, Integer::sum);
+        IntStream.range(0, blocks).parallel().forEach(range -> {
+            for (int u = firstOf(range, blocks, numNodes); u < firstOf(range + 1, blocks, numNodes); ++u)
+                for (int b = 0; b < blocks; ++b)
+                    next[b][u] += offsets[u];
+        });
+
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int[] slot = next[b];
+            for (int e = firstOf(b, blocks, m); e < firstOf(b + 1, blocks, m); ++e) {
+                int forward = slot[tails[e]]++;
+                int backward = slot[edgeHeads[e]]++;
+
+                heads[forward] = edgeHeads[e];
+                heads[backward] = tails[e];
+                reverse[forward] = backward;
+                reverse[backward] = forward;
+                capacity[forward] = capacities[e];
+                residual[forward] = capacities[e];
+                edgeArcs[e] = forward;
+            }
+        });
+    }
+
+    /* Returns the first of count items in the given block of blocks. */
+    private static int firstOf(int block, int blocks, int count) {
+        return (int) ((long) block * count / blocks);
+    }
+
+    /**
+     * Constructs a residual graph with no flow on it for a compressed graph,
+     * decoding the edges straight from the file rather than from arrays.
+     * The edges are numbered in the order they are stored in the file.
+     *
+     * @param g The graph from which the residual graph should be built.
+     */
+    public CsrResidualGraph(CompressedGraphFormat.Graph g) {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.RESIDUAL);
+        numNodes = g.numNodes();
+        int m = g.numEdges();
+
+        /* The same two passes as above, each one a walk over the file. */
+        offsets = new int[numNodes + 1];
+        CompressedGraphFormat.Cursor cursor = g.cursor();
+        while (cursor.next()) {
+            ++offsets[cursor.tail() + 1];
+            ++offsets[cursor.head() + 1];
+        }
+        for (int u = 0; u < numNodes; ++u)
+            offsets[u + 1] += offsets[u];
+
+        heads = new int[2 * m];
+        reverse = new int[2 * m];
+        residual = new int[2 * m];
+        capacity = new int[2 * m];
+        edgeArcs = new int[m];
+
+        int[] next = Arrays.copyOf(offsets, numNodes);
+        cursor = g.cursor();
+        while (cursor.next()) {
+            int tail = cursor.tail();
+            int head = cursor.head();
+            int forward = next[tail]++;
+            int backward = next[head]++;
+
+            heads[forward] = head;
+            heads[backward] = tail;
+            reverse[forward] = backward;
+            reverse[backward] = forward;
+            capacity[forward] = cursor.capacity();
+            residual[forward] = capacity[forward];
+            edgeArcs[cursor.edge()] = forward;
+        }
+        timer.exit(outer);
+    }
+
+    /**
+     * Builds a residual graph with no flow on it for a flow network.  The
+     * nodes are numbered in the order the network iterates over them, and
+     * the edges in the order they are found, which lets the caller copy a
+     * flow found in the residual graph back into the network.
+     *
+     * @param network The flow network.
+     * @param ids Receives the id given to each node.
+     * @param edges Receives each edge of the network, at its edge number.
+     * @return A residual graph for the network.
+     */
+    static <T> CsrResidualGraph forNetwork(FlowNetwork<T> network, Map<T, Integer> ids,
+                                           List<FlowNetwork.Edge<T>> edges) {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.BUILD);
+        for (T node: network)
+            ids.put(node, ids.size());
+        for (T node: network)
+            edges.addAll(network.edgesFrom(node));
+
+        int m = edges.size();
+        int[] tails = new int[m];
+        int[] heads = new int[m];
+        int[] capacities = new int[m];
+        for (int e = 0; e < m; ++e) {
+            FlowNetwork.Edge<T> edge = edges.get(e);
+            tails[e] = ids.get(edge.getStart());
+            heads[e] = ids.get(edge.getEnd());
+            capacities[e] = edge.getCapacity();
+        }
+        timer.exit(outer);
+        return new CsrResidualGraph(ids.size(), m, tails, heads, capacities);
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes in the graph.
+     */
+    public int numNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Returns the number of arcs in the graph, which is twice the number of
+     * edges in the original graph.
+     *
+     * @return The number of arcs in the graph.
+     */
+    public int numArcs() {
+        return heads.length;
+    }
+
+    /**
+     * Returns the first arc leaving the given node.
+     *
+     * @param node The node whose arcs should be queried.
+     * @return The first arc leaving that node.
+     */
+    public int firstArc(int node) {
+        return offsets[node];
+    }
+
+    /**
+     * Returns one past the last arc leaving the given node.
+     *
+     * @param node The node whose arcs should be queried.
+     * @return One past the last arc leaving that node.
+     */
+    public int endArc(int node) {
+        return offsets[node + 1];
+    }
+
+    /**
+     * Returns the node the given arc points to.
+     *
+     * @param arc The arc to query.
+     * @return The head of that arc.
+     */
+    public int head(int arc) {
+        return heads[arc];
+    }
+
+    /**
+     * Returns the node the given arc leaves from.
+     *
+     * @param arc The arc to query.
+     * @return The tail of that arc.
+     */
+    public int tail(int arc) {
+        return heads[reverse[arc]];
+    }
+
+    /**
+     * Returns the arc running the opposite direction from the given arc.
+     *
+     * @param arc The arc to query.
+     * @return The reverse of that arc.
+     */
+    public int reverse(int arc) {
+        return reverse[arc];
+    }
+
+    /**
+     * Returns the remaining capacity of the given arc.
+     *
+     * @param arc The arc to query.
+     * @return The residual capacity of that arc.
+     */
+    public int residual(int arc) {
+        return residual[arc];
+    }
+
+    /**
+     * Returns the capacity of the given arc when no flow is present.  This
+     * is the capacity of the original edge for a forward arc and zero for a
+     * reverse arc.
+     *
+     * @param arc The arc to query.
+     * @return The capacity of that arc.
+     */
+    public int capacity(int arc) {
+        return capacity[arc];
+    }
+
+    /**
+     * Pushes the given amount of flow across an arc, decreasing its residual
+     * capacity and increasing that of its reverse.  No check is made that
+     * the arc has enough capacity; callers are expected to have found the
+     * amount by inspecting the residual capacities.
+     *
+     * @param arc The arc to push flow across.
+     * @param amount The amount of flow to push.
+     */
+    public void push(int arc, int amount) {
+        residual[arc] -= amount;
+        residual[reverse[arc]] += amount;
+    }
+
+    /**
+     * Returns the forward arc for the given edge of the original graph.
+     *
+     * @param edge The index of the edge in the original graph.
+     * @return The arc from the edge's start to its end.
+     */
+    public int edgeArc(int edge) {
+        return edgeArcs[edge];
+    }
+
+    /**
+     * Returns the amount of flow on the given edge of the original graph.
+     *
+     * @param edge The index of the edge in the original graph.
+     * @return The flow across that edge.
+     */
+    public int flow(int edge) {
+        int arc = edgeArcs[edge];
+        return capacity[arc] - residual[arc];
+    }
+
+    /**
+     * Removes all flow from the graph, restoring every arc's residual
+     * capacity to its original capacity.
+     */
+    public void reset() {
+        System.arraycopy(capacity, 0, residual, 0, capacity.length);
+    }
+}
@@ -0,0 +1,360 @@
+/*****************************************************************************
+ * File: EdgeListLoader.java
+ *
+ * A loader for graphs stored in the space-delimited edge-list format used by
+ * every input file in this project:
+ *
+ *     nodename nodename capacity
+ *
+ * The loader memory-maps the input file and tokenizes the raw bytes in place.
+ * Node names are interned directly from the mapped bytes into dense integer
+ * ids by a NodeDictionary, and capacities are parsed digit-by-digit into an
+ * int, so no String is created for any individual field.
+ *
+ * Fields may be separated by any run of spaces or tabs, and both "\n" and
+ * "\r\n" line endings are accepted (the random graph generator emits the
+ * latter).  Blank lines are ignored, as is anything after the third field.
+ *
+ * Large files are split at line boundaries into chunks, which are mapped
+ * and parsed independently on the common ForkJoinPool, each into its own
+ * edge arrays and its own NodeDictionary.  The chunks' dictionaries are then
+ * merged in file order, which gives every name the id it would have had
+ * from a single pass over the file, and the edges are renumbered and copied
+ * into place in parallel.  The result is identical to a sequential parse,
+ * whatever the number of chunks.  Since each chunk is mapped on its own,
+ * files larger than 2GB can be loaded too.  The PARSE time that PhaseTimer
+ * records is the calling thread's, so its CPU time leaves out the workers.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*; // For ArrayList, Arrays, List
+import java.util.concurrent.*; // For Callable, ExecutionException, ForkJoinPool, Future
+
+public final class EdgeListLoader {
+    /* Files are split into chunks of at least this many bytes... */
+    private static final long MIN_CHUNK = 16L << 20;
+
+    /* ...and at most this many, which is as much as one mapping can hold. */
+    private static final long MAX_CHUNK = 1L << 30;
+
+    /* The number of chunks per worker, so that a slow chunk doesn't leave
+     * the other workers idle at the end.  Every chunk's names have to be
+     * merged into the graph's dictionary one chunk at a time, so there
+     * shouldn't be many more.
+     */
+    private static final int CHUNKS_PER_WORKER = 2;
+
+    /**
+     * Loads the graph stored in the file at the given path.
+     *
+     * @param path The path to the input file.
+     * @return The graph stored in that file.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static FlowGraph load(String path) throws IOException {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.PARSE);
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return parse(channel, path);
+        } finally {
+            timer.exit(outer);
+        }
+    }
+
+    /**
+     * Does the work of load().
+     */
+    private static FlowGraph parse(FileChannel channel, String path) throws IOException {
+        List<Chunk> chunks = split(channel);
+
+        /* A single chunk needs no merging, and is parsed on this thread. */
+        if (chunks.size() == 1) {
+            Chunk chunk = chunks.get(0);
+            chunk.parse(channel);
+            if (chunk.errorLine > 0)
+                throw malformed(path, chunk.errorLine);
+            return new FlowGraph(chunk.names, chunk.tails, chunk.heads, chunk.capacities, chunk.numEdges);
+        }
+
+        List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>();
+        for (Chunk chunk: chunks)
+            tasks.add(() -> chunk.parse(channel));
+        join(ForkJoinPool.commonPool().invokeAll(tasks));
+
+        /* Report the first malformed line in the file, counting lines from
+         * the start of the file rather than the start of its chunk.
+         */
+        long linesBefore = 0;
+        long numEdges = 0;
+        for (Chunk chunk: chunks) {
+            if (chunk.errorLine > 0)
+                throw malformed(path, linesBefore + chunk.errorLine);
+            linesBefore += chunk.lines;
+            chunk.firstEdge = (int) numEdges;
+            numEdges += chunk.numEdges;
+        }
+        if (numEdges > Integer.MAX_VALUE - 8)
+            throw new IOException("File " + path + " has too many edges (" + numEdges + ").");
+
+        /* Merge the dictionaries in file order.  The first chunk's names
+         * already have the right ids, so its dictionary becomes the graph's.
+         */
+        NodeDictionary names = chunks.get(0).names;
+        for (Chunk chunk: chunks.subList(1, chunks.size()))
+            chunk.ids = names.internAll(chunk.names);
+
+        int[] tails = new int[(int) numEdges];
+        int[] heads = new int[(int) numEdges];
+        int[] capacities = new int[(int) numEdges];
+        List<Callable<Void>> copies = new ArrayList<Callable<Void>>();
+        for (Chunk chunk: chunks) {
+            copies.add(() -> {
+                chunk.copyInto(tails, heads, capacities);
+                return null;
+            });
+        }
+        join(ForkJoinPool.commonPool().invokeAll(copies));
+        return new FlowGraph(names, tails, heads, capacities, (int) numEdges);
+    }
+
+    /**
+     * Splits a file into chunks, each ending just after a newline (or at the
+     * end of the file), aiming for a few chunks per worker.  With a single
+     * worker there is nothing to gain from splitting a file that fits in
+     * one mapping.
+     */
+    private static List<Chunk> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int workers = ForkJoinPool.getCommonPoolParallelism();
+        long target = size / (workers * (long) CHUNKS_PER_WORKER);
+        target = (workers == 1) ? MAX_CHUNK : Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, target));
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        ByteBuffer window = ByteBuffer.allocate(1 << 16);
+        long start = 0;
+        while (start < size || chunks.isEmpty()) {
+            long end = Math.min(size, start + target);
+
+            /* Move the end forward to the start of the next line. */
+            while (end < size) {
+                window.clear();
+                int read = channel.read(window, end - 1);
+                int newline = -1;
+                for (int i = 0; i < read && newline < 0; ++i)
+                    if (window.get(i) == '\n')
+                        newline = i;
+                if (newline >= 0) {
+                    end += newline;
+                    break;
+                }
+                end += read;
+            }
+            end = Math.min(end, size);
+            if (end - start > Integer.MAX_VALUE)
+                throw new IOException("A line of the file is too long to map.");
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Waits for every task to finish, rethrowing the first failure.
+     */
+    private static <T> void join(List<Future<T>> futures) throws IOException {
+        for (Future<T> future: futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading a graph.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A run of whole lines of the input file, and the edges parsed from it.
+     * Node ids within a chunk are local to its own dictionary until the
+     * chunks are merged.
+     */
+    private static final class Chunk {
+        private final long from;
+        private final long to;
+
+        private NodeDictionary names;
+        private int[] tails;
+        private int[] heads;
+        private int[] capacities;
+        private int numEdges = 0;
+
+        /* The number of newlines in the chunk, and the line within it of the
+         * first malformed edge, or 0 if there is none.
+         */
+        private long lines = 0;
+        private long errorLine = 0;
+
+        /* Where the chunk's edges go in the graph, and the graph's id for
+         * each of its local ids (null for the first chunk).
+         */
+        private int firstEdge = 0;
+        private int[] ids;
+
+        Chunk(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Maps and parses the chunk.  A malformed edge stops the parse and
+         * is recorded in errorLine.
+         */
+        Chunk parse(FileChannel channel) throws IOException {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+
+            /* Guess at the number of edges from the chunk size so that the
+             * edge arrays rarely need to grow.  Lines in our inputs are
+             * rarely shorter than ten bytes.
+             */
+            int expected = Math.max(16, buf.limit() / 10);
+            tails = new int[expected];
+            heads = new int[expected];
+            capacities = new int[expected];
+            names = new NodeDictionary();
+
+            int limit = buf.limit();
+            int pos = 0;
+            long line = 1;
+
+            while (pos < limit) {
+                /* Skip any leading whitespace.  If we've hit the end of the
+                 * line then this was a blank line and there's nothing to do.
+                 */
+                pos = skipBlanks(buf, pos, limit);
+                if (pos == limit) break;
+                if (buf.get(pos) == '\n') {
+                    ++pos;
+                    ++line;
+                    continue;
+                }
+
+                /* Read the two endpoints, interning each as we go. */
+                int start = pos;
+                pos = skipToken(buf, pos, limit);
+                int tail = names.intern(buf, start, pos - start);
+
+                pos = skipBlanks(buf, pos, limit);
+                if (atEndOfLine(buf, pos, limit))
+                    return failed(line);
+                start = pos;
+                pos = skipToken(buf, pos, limit);
+                int head = names.intern(buf, start, pos - start);
+
+                /* Read the capacity, which must be a non-negative integer. */
+                pos = skipBlanks(buf, pos, limit);
+                if (atEndOfLine(buf, pos, limit))
+                    return failed(line);
+                long capacity = 0;
+                start = pos;
+                for (; pos < limit && isDigit(buf.get(pos)); ++pos) {
+                    capacity = capacity * 10 + (buf.get(pos) - '0');
+                    if (capacity > Integer.MAX_VALUE)
+                        return failed(line);
+                }
+                if (pos == start || !(pos == limit || isBlank(buf.get(pos)) || buf.get(pos) == '\n'))
+                    return failed(line);
+
+                /* Record the edge, growing the arrays if we need to. */
+                if (numEdges == tails.length) {
+                    int size = tails.length * 2;
+                    tails = Arrays.copyOf(tails, size);
+                    heads = Arrays.copyOf(heads, size);
+                    capacities = Arrays.copyOf(capacities, size);
+                }
+                tails[numEdges] = tail;
+                heads[numEdges] = head;
+                capacities[numEdges] = (int) capacity;
+                ++numEdges;
+
+                /* Discard the rest of the line. */
+                while (pos < limit && buf.get(pos) != '\n')
+                    ++pos;
+            }
+            lines = line - 1;
+            return this;
+        }
+
+        private Chunk failed(long line) {
+            errorLine = line;
+            return this;
+        }
+
+        /**
+         * Copies the chunk's edges into the graph's arrays, renumbering
+         * their endpoints, and lets go of the chunk's own arrays.
+         */
+        void copyInto(int[] allTails, int[] allHeads, int[] allCapacities) {
+            if (ids == null) {
+                System.arraycopy(tails, 0, allTails, firstEdge, numEdges);
+                System.arraycopy(heads, 0, allHeads, firstEdge, numEdges);
+            } else {
+                for (int e = 0; e < numEdges; ++e) {
+                    allTails[firstEdge + e] = ids[tails[e]];
+                    allHeads[firstEdge + e] = ids[heads[e]];
+                }
+            }
+            System.arraycopy(capacities, 0, allCapacities, firstEdge, numEdges);
+            tails = heads = capacities = null;
+        }
+    }
+
+    /**
+     * Returns the first position at or after pos that is not a space, tab,
+     * or carriage return.
+     */
+    private static int skipBlanks(MappedByteBuffer buf, int pos, int limit) {
+        while (pos < limit && isBlank(buf.get(pos)))
+            ++pos;
+        return pos;
+    }
+
+    /**
+     * Returns the first position at or after pos that ends the current
+     * token.
+     */
+    private static int skipToken(MappedByteBuffer buf, int pos, int limit) {
+        while (pos < limit && !isBlank(buf.get(pos)) && buf.get(pos) != '\n')
+            ++pos;
+        return pos;
+    }
+
+    /**
+     * Returns whether pos is at the end of the current line.
+     */
+    private static boolean atEndOfLine(MappedByteBuffer buf, int pos, int limit) {
+        return pos == limit || buf.get(pos) == '\n';
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static IOException malformed(String path, long line) {
+        return new IOException("Malformed edge on line " + line + " of " + path + ".");
+    }
+}
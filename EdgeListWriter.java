@@ -0,0 +1,156 @@
+/*****************************************************************************
+ * File: EdgeListWriter.java
+ *
+ * A writer for the space-delimited edge-list format read by EdgeListLoader:
+ *
+ *     nodename nodename capacity
+ *
+ * The writer is the output half of the graph generators.  Text is
+ * formatted straight into a large byte buffer, numbers digit by digit, and
+ * the buffer is written through a FileChannel whenever it fills, so writing
+ * an edge allocates nothing.  Node names are written a piece at a time by
+ * the caller, which lets a generator spell out a name such as "(3,14)" or
+ * "v271" without building a String for it.  A typical edge looks like
+ *
+ *     out.text('v').number(tail).space().text('v').number(head).space()
+ *        .number(capacity).endLine();
+ *
+ * Optionally, everything written is echoed to standard output as well.
+ * Names and numbers are assumed to be ASCII.
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public final class EdgeListWriter implements Closeable {
+    /* The size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /* The most bytes a number can take up. */
+    private static final int MAX_NUMBER = 11;
+
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final boolean echo;
+
+    /**
+     * Opens a writer onto the file at the given path, replacing anything
+     * already there.
+     *
+     * @param path The path to write to.
+     * @param echo Whether to copy the output to standard output as well.
+     * @throws IOException If the file can't be opened.
+     */
+    public EdgeListWriter(String path, boolean echo) throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.WRITE,
+                                   StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.echo = echo;
+    }
+
+    /**
+     * Writes a single character.
+     *
+     * @param c The character to write.
+     * @return This writer.
+     */
+    public EdgeListWriter text(char c) throws IOException {
+        room(1);
+        buf.put((byte) c);
+        return this;
+    }
+
+    /**
+     * Writes a piece of text.
+     *
+     * @param s The text to write.
+     * @return This writer.
+     */
+    public EdgeListWriter text(String s) throws IOException {
+        room(s.length());
+        for (int i = 0; i < s.length(); ++i)
+            buf.put((byte) s.charAt(i));
+        return this;
+    }
+
+    /**
+     * Writes an int in decimal.
+     *
+     * @param value The value to write.
+     * @return This writer.
+     */
+    public EdgeListWriter number(int value) throws IOException {
+        room(MAX_NUMBER);
+        if (value < 0) {
+            buf.put((byte) '-');
+            if (value == Integer.MIN_VALUE) {
+                /* The one int whose magnitude doesn't fit in an int. */
+                text("2147483648");
+                return this;
+            }
+            value = -value;
+        }
+
+        /* Count the digits, then fill them in from the right. */
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10)
+            ++digits;
+        int end = buf.position() + digits;
+        for (int pos = end - 1; pos >= buf.position(); --pos) {
+            buf.put(pos, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buf.position(end);
+        return this;
+    }
+
+    /**
+     * Writes the space that separates the fields of a line.
+     *
+     * @return This writer.
+     */
+    public EdgeListWriter space() throws IOException {
+        return text(' ');
+    }
+
+    /**
+     * Ends the current line.
+     *
+     * @return This writer.
+     */
+    public EdgeListWriter endLine() throws IOException {
+        return text('\n');
+    }
+
+    /**
+     * Writes out anything still buffered and closes the file.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /* Flushes the buffer if it doesn't have room for the given number of
+     * bytes.  Text longer than the whole buffer is not supported.
+     */
+    private void room(int bytes) throws IOException {
+        if (buf.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        if (echo) {
+            System.out.write(buf.array(), 0, buf.position());
+            System.out.flush();
+        }
+        buf.flip();
+        while (buf.hasRemaining())
+            channel.write(buf);
+        buf.clear();
+    }
+}
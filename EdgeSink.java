@@ -0,0 +1,22 @@
+/*****************************************************************************
+ * File: EdgeSink.java
+ *
+ * A receiver for the edges of a graph as a generator produces them.  The
+ * generators number their nodes densely and hand each edge over as a pair
+ * of node numbers, so the same generator can stream a graph to a file (see
+ * EdgeListWriter) or straight into a FlowGraph.Builder without building any
+ * intermediate representation.
+ */
+import java.io.IOException;
+
+public interface EdgeSink {
+    /**
+     * Receives one edge of the graph.
+     *
+     * @param tail The number of the start node.
+     * @param head The number of the end node.
+     * @param capacity The capacity of the edge.
+     * @throws IOException If the edge can't be recorded.
+     */
+    void edge(int tail, int head, int capacity) throws IOException;
+}
@@ -0,0 +1,180 @@
+/*****************************************************************************
+ * File: EdmondsKarp.java
+ *
+ * An implementation of the Edmonds-Karp algorithm for computing maximum s-t
+ * flows in a graph.  Edmonds-Karp is the Ford-Fulkerson algorithm with one
+ * refinement: each augmenting path is found by a breadth-first search, so
+ * the algorithm always augments along a shortest path (by number of arcs) in
+ * the residual graph.  This single change makes the runtime independent of
+ * the capacities.  The length of the shortest augmenting path never
+ * decreases, and each length can be used by at most O(m) augmentations
+ * before some arc on every such path is saturated, so there are O(nm)
+ * augmentations in total.  Each breadth-first search takes O(m) time, for a
+ * total runtime of O(nm^2).
+ *
+ * The engine runs on a CsrResidualGraph.  The search uses an explicit queue
+ * rather than recursion, records the arc used to reach each node in an int
+ * array, and marks visited nodes by stamping them with the number of the
+ * current search.  Starting a new search is then a matter of incrementing
+ * the search number, and no memory is allocated or cleared between
+ * augmentations.
+ */
+import java.util.*; // For ArrayList, HashMap, List, Map, NoSuchElementException
+
+public final class EdmondsKarp {
+    /**
+     * Given a graph and a pair of nodes s and t, produces a maximum s-t flow
+     * in that graph.
+     *
+     * @param g The graph to search.
+     * @param s The start node of the flow.
+     * @param t The end node of the flow.
+     * @return f A flow network for g containing a maximum s/t flow.
+     * @throws NoSuchElementException If s or t are not nodes in the graph.
+     */
+    public static <T> FlowNetwork<T> maxFlow(IntegralDirectedGraph<T> g, T s, T t) {
+        /* Number the nodes densely so that they can index arrays. */
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.BUILD);
+        List<T> nodes = new ArrayList<T>(g.size());
+        Map<T, Integer> ids = new HashMap<T, Integer>();
+        int numEdges = 0;
+        for (T node: g) {
+            ids.put(node, nodes.size());
+            nodes.add(node);
+            numEdges += g.edgesFrom(node).size();
+        }
+
+        if (!ids.containsKey(s) || !ids.containsKey(t)) {
+            timer.exit(outer);
+            throw new NoSuchElementException("Start and end nodes must be in the graph!");
+        }
+
+        /* Flatten the edges into parallel arrays. */
+        int[] tails = new int[numEdges];
+        int[] heads = new int[numEdges];
+        int[] capacities = new int[numEdges];
+        int e = 0;
+        for (T node: nodes) {
+            for (Map.Entry<T, Integer> edge: g.edgesFrom(node).entrySet()) {
+                tails[e] = ids.get(node);
+                heads[e] = ids.get(edge.getKey());
+                capacities[e] = edge.getValue();
+                ++e;
+            }
+        }
+
+        /* Compute a max-flow in the residual graph. */
+        CsrResidualGraph residual = new CsrResidualGraph(nodes.size(), numEdges,
+                                                         tails, heads, capacities);
+        findMaxFlow(residual, ids.get(s), ids.get(t));
+
+        /* Copy the structure and the flow into the resulting flow network. */
+        timer.enter(PhaseTimer.Phase.WRITE_BACK);
+        FlowNetwork<T> result = new FlowNetwork<T>();
+        for (T node: nodes)
+            result.addNode(node);
+        for (e = 0; e < numEdges; ++e) {
+            FlowNetwork.Edge<T> edge = result.addEdge(nodes.get(tails[e]), nodes.get(heads[e]));
+            edge.setCapacity(capacities[e]);
+            edge.setFlow(residual.flow(e));
+        }
+        timer.exit(outer);
+        return result;
+    }
+
+    /**
+     * Given a residual graph and a pair of node ids s and t, pushes flow
+     * along shortest augmenting paths until none remain.  Any flow already
+     * present in the residual graph is used as a starting point, and the
+     * graph is left holding a maximum s-t flow.
+     *
+     * @param g The residual graph to search.
+     * @param s The id of the start node of the flow.
+     * @param t The id of the end node of the flow.
+     * @return The amount by which the s-t flow was increased.
+     */
+    public static int findMaxFlow(CsrResidualGraph g, int s, int t) {
+        /* The max flow from a node to itself is zero. */
+        if (s == t) return 0;
+
+        /* Allocate the search state once for the whole run.  A node has been
+         * visited by the current search iff its stamp equals the search
+         * number, so no search ever has to clear the stamps.
+         */
+        int n = g.numNodes();
+        int[] queue = new int[n];
+        int[] parentArc = new int[n];
+        int[] stamp = new int[n];
+        int search = 0;
+        SolverStats stats = SolverStats.current();
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.SOLVE);
+
+        int total = 0;
+        while (true) {
+            ++search;
+            if (!findPath(g, s, t, queue, parentArc, stamp, search, stats)) break;
+
+            /* Find the bottleneck capacity along the path by walking back
+             * from t along the parent arcs, then push that much flow.
+             */
+            int capacity = Integer.MAX_VALUE;
+            for (int node = t; node != s; node = g.tail(parentArc[node]))
+                capacity = Math.min(capacity, g.residual(parentArc[node]));
+            for (int node = t; node != s; node = g.tail(parentArc[node]))
+                g.push(parentArc[node], capacity);
+
+            total += capacity;
+            ++stats.augmentingPaths;
+        }
+        timer.exit(outer);
+        return total;
+    }
+
+    /**
+     * Runs a breadth-first search from s over arcs with remaining capacity,
+     * stopping as soon as t is reached.  If t is reached, parentArc[v] holds
+     * the arc used to reach each node v on the shortest path to it.
+     *
+     * @param g The residual graph to search.
+     * @param s The start node of the search.
+     * @param t The destination node of the search.
+     * @param queue Scratch space for the search queue.
+     * @param parentArc Receives the arc used to reach each node.
+     * @param stamp The visit stamp of each node.
+     * @param search The stamp identifying this search.
+     * @param stats The counters to report the arcs scanned to.
+     * @return Whether a path was found.
+     */
+    private static boolean findPath(CsrResidualGraph g, int s, int t, int[] queue, int[] parentArc,
+                                    int[] stamp, int search, SolverStats stats) {
+        /* Each node is enqueued at most once, since it is stamped when it is
+         * enqueued, so the queue never holds more than n nodes.
+         */
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = s;
+        stamp[s] = search;
+
+        long scanned = 0;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int arc = g.firstArc(node); arc < g.endArc(node); ++arc) {
+                ++scanned;
+                int next = g.head(arc);
+                if (stamp[next] == search || g.residual(arc) == 0) continue;
+
+                stamp[next] = search;
+                parentArc[next] = arc;
+                if (next == t) {
+                    stats.arcsScanned += scanned;
+                    return true;
+                }
+                queue[tail++] = next;
+            }
+        }
+        stats.arcsScanned += scanned;
+        return false;
+    }
+}
@@ -0,0 +1,263 @@
+/*****************************************************************************
+ * File: FixedDegreeGraph.java
+ *
+ * A generator for fixed-degree flow networks.  There are n nodes v1..vn and
+ * every one of them has exactly d out-edges, to d distinct nodes chosen at
+ * random from the others.  The source feeds d distinct random nodes and d
+ * distinct random nodes feed the sink.  The edges come out in the same
+ * order as in the checked-in fixed-degree files:
+ *
+ *     s vi c     for each of the d nodes the source feeds
+ *     vi t c     for each of the d nodes that feed the sink
+ *     vi vj c    d edges for each node, from v1 to vn
+ *
+ * Every edge gets its own capacity, drawn uniformly from [X, 100].  A
+ * graph is described by the same names the existing files use:
+ *
+ *     fixedDegreeHighX  1000 nodes of degree 10
+ *     fixedDegreeLowX   1000 nodes of degree 2
+ *
+ * The edges are streamed to an EdgeSink in order.  Choosing a node's
+ * targets takes a stamp per node, so the generator needs O(n) memory
+ * beyond the output buffer however many edges it writes.
+ *
+ * Usage: java FixedDegreeGraph [-seed N] [-echo] [-nodes N] [-degree D] name [file]
+ *
+ * -nodes and -degree override the size given by the name, and the file
+ * defaults to the name with ".txt" added.  The FlowGraph classes live in
+ * the parent directory, so compile and run with it on the class path:
+ *
+ *     javac -cp .. FixedDegreeGraph.java
+ *     java -cp .:.. FixedDegreeGraph -seed 1 -nodes 100000 fixedDegreeHigh55
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*; // For Random
+import java.util.regex.*; // For Matcher, Pattern
+
+public final class FixedDegreeGraph {
+    /* The names of the fixed-degree graphs. */
+    private static final Pattern NAME = Pattern.compile("fixedDegree(High|Low)(\\d+)(?:\\.txt)?");
+
+    /* Every capacity is at most this. */
+    private static final int MAX_CAPACITY = 100;
+
+    /* The size and capacities of a graph, as given by its name. */
+    private final int nodes;
+    private final int degree;
+    private final int minCapacity;
+    private final int maxCapacity;
+
+    /**
+     * Constructs a fixed-degree graph with the given size and range of
+     * capacities.
+     *
+     * @param nodes The number of nodes, not counting s and t.
+     * @param degree The out-degree of every node.
+     * @param minCapacity The smallest capacity to give an edge.
+     * @param maxCapacity The largest capacity to give an edge.
+     * @throws IllegalArgumentException If the degree can't be met or the
+     *                                  range of capacities is empty or
+     *                                  negative.
+     */
+    public FixedDegreeGraph(int nodes, int degree, int minCapacity, int maxCapacity) {
+        if (nodes < 1 || nodes > Integer.MAX_VALUE - 2)
+            throw new IllegalArgumentException("Cannot build a graph with " + nodes + " nodes.");
+        if (degree < 0 || degree > nodes - 1)
+            throw new IllegalArgumentException("A graph with " + nodes + " nodes can't have degree " + degree + ".");
+        if (minCapacity < 0 || maxCapacity < minCapacity)
+            throw new IllegalArgumentException("Capacities must satisfy 0 <= minCapacity <= maxCapacity.");
+        this.nodes = nodes;
+        this.degree = degree;
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * Returns the graph described by a name such as fixedDegreeHigh55.
+     *
+     * @param name The name of the graph.
+     * @return The graph with that name.
+     * @throws IllegalArgumentException If the name doesn't describe a
+     *                                  fixed-degree graph.
+     */
+    public static FixedDegreeGraph forName(String name) {
+        Matcher matcher = NAME.matcher(name);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("No fixed-degree graph is named " + name + ".");
+        int degree = matcher.group(1).equals("High") ? 10 : 2;
+        return new FixedDegreeGraph(1000, degree, Integer.parseInt(matcher.group(2)), MAX_CAPACITY);
+    }
+
+    /**
+     * Returns a graph with the same capacities as this one and a new size.
+     *
+     * @param nodes The number of nodes, not counting s and t.
+     * @param degree The out-degree of every node.
+     * @return A graph of that size.
+     */
+    public FixedDegreeGraph resize(int nodes, int degree) {
+        return new FixedDegreeGraph(nodes, degree, minCapacity, maxCapacity);
+    }
+
+    /**
+     * Returns the number of nodes in the graph, including s and t.
+     *
+     * @return The number of nodes.
+     */
+    public int numNodes() {
+        return nodes + 2;
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    public long numEdges() {
+        return (long) degree * (nodes + 2);
+    }
+
+    /**
+     * Generates the graph and hands its edges to a sink in order.  The nodes
+     * are numbered s = 0, vi = i and t = nodes + 1.
+     *
+     * @param seed The seed for the random number generator.
+     * @param sink Receives the edges.
+     */
+    public void generate(long seed, EdgeSink sink) throws IOException {
+        Random random = new Random(seed);
+        int t = nodes + 1;
+
+        /* A node has been chosen for the current list of targets iff its
+         * stamp equals the number of the list, so the stamps never need to
+         * be cleared.
+         */
+        int[] stamp = new int[nodes + 2];
+        int list = 0;
+
+        ++list;
+        for (int k = 0; k < degree; ++k)
+            sink.edge(0, choose(random, stamp, list), capacity(random));
+        ++list;
+        for (int k = 0; k < degree; ++k)
+            sink.edge(choose(random, stamp, list), t, capacity(random));
+
+        for (int v = 1; v <= nodes; ++v) {
+            ++list;
+            stamp[v] = list;
+            for (int k = 0; k < degree; ++k)
+                sink.edge(v, choose(random, stamp, list), capacity(random));
+        }
+    }
+
+    /**
+     * Generates the graph and writes it to a file.
+     *
+     * @param path The path to write to.
+     * @param seed The seed for the random number generator.
+     * @param echo Whether to copy the output to standard output as well.
+     */
+    public void write(String path, long seed, boolean echo) throws IOException {
+        try (EdgeListWriter out = new EdgeListWriter(path, echo)) {
+            generate(seed, (tail, head, capacity) -> {
+                writeNode(out, tail);
+                out.space();
+                writeNode(out, head);
+                out.space().number(capacity).endLine();
+            });
+        }
+    }
+
+    /**
+     * Generates the graph straight into memory.
+     *
+     * @param seed The seed for the random number generator.
+     * @return The generated graph.
+     */
+    public FlowGraph toFlowGraph(long seed) {
+        /* Name the nodes in numbering order, so that the ids match. */
+        FlowGraph.Builder builder = new FlowGraph.Builder((int) Math.min(numEdges(), 1 << 30));
+        for (int node = 0; node < numNodes(); ++node)
+            builder.node(nodeName(node));
+
+        try {
+            generate(seed, builder::addEdge);
+        } catch (IOException e) {
+            /* Adding to a builder can't fail this way. */
+            throw new UncheckedIOException(e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the name of the node with the given number.
+     *
+     * @param node The number of the node.
+     * @return Its name.
+     */
+    public String nodeName(int node) {
+        if (node == 0) return "s";
+        if (node == nodes + 1) return "t";
+        return "v" + node;
+    }
+
+    private void writeNode(EdgeListWriter out, int node) throws IOException {
+        if (node == 0)
+            out.text('s');
+        else if (node == nodes + 1)
+            out.text('t');
+        else
+            out.text('v').number(node);
+    }
+
+    /* Picks a node from v1..vn that isn't stamped with the given list yet,
+     * and stamps it.  Since the degree is less than the number of nodes,
+     * there is always one left to pick.
+     */
+    private int choose(Random random, int[] stamp, int list) {
+        while (true) {
+            int v = 1 + random.nextInt(nodes);
+            if (stamp[v] != list) {
+                stamp[v] = list;
+                return v;
+            }
+        }
+    }
+
+    private int capacity(Random random) {
+        return minCapacity + random.nextInt(maxCapacity - minCapacity + 1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = new Random().nextLong();
+        boolean echo = false;
+        int nodes = -1;
+        int degree = -1;
+
+        int arg = 0;
+        for (; arg < args.length && args[arg].startsWith("-"); ++arg) {
+            if (args[arg].equals("-echo"))
+                echo = true;
+            else if (args[arg].equals("-seed") && arg + 1 < args.length)
+                seed = Long.parseLong(args[++arg]);
+            else if (args[arg].equals("-nodes") && arg + 1 < args.length)
+                nodes = Integer.parseInt(args[++arg]);
+            else if (args[arg].equals("-degree") && arg + 1 < args.length)
+                degree = Integer.parseInt(args[++arg]);
+            else
+                break;
+        }
+        if (args.length - arg < 1 || args.length - arg > 2) {
+            System.err.println("Usage: java FixedDegreeGraph [-seed N] [-echo] [-nodes N] [-degree D] name [file]");
+            System.exit(1);
+        }
+
+        String name = args[arg];
+        FixedDegreeGraph graph = forName(name);
+        if (nodes > 0 || degree >= 0)
+            graph = graph.resize(nodes > 0 ? nodes : graph.nodes, degree >= 0 ? degree : graph.degree);
+        String path = arg + 1 < args.length ? args[arg + 1] : (name.endsWith(".txt") ? name : name + ".txt");
+        graph.write(path, seed, echo);
+    }
+}
@@ -0,0 +1,121 @@
+/*****************************************************************************
+ * File: FlowEvents.java
+ *
+ * Java Flight Recorder events for the major units of work inside a max-flow
+ * run.  A recording made with these events enabled shows a timeline of one
+ * run rather than a single total:
+ *
+ *   GraphLoad         - Loading a graph file into a FlowGraph.
+ *   ScalingRound      - One delta round of capacity-scaling Ford-Fulkerson.
+ *   AugmentationBatch - A batch of consecutive Ford-Fulkerson augmentations.
+ *   GlobalRelabel     - One global relabel of push-relabel.
+ *
+ * Each solver event carries the flow found so far and the number of arcs in
+ * the residual graph, along with the work done during the event.
+ *
+ * The events follow the usual JFR pattern: an event is created and begun
+ * before the work, and its fields are only filled in once shouldCommit()
+ * says the recording wants it.  When no recording is running, or these
+ * events are disabled in it, shouldCommit() is false and the JIT compiler
+ * is free to remove the event altogether.  Augmentations are reported in
+ * batches, since a single augmentation is too small a unit to time.
+ *
+ * To record a run:
+ *
+ *     java -XX:StartFlightRecording=filename=run.jfr RunMaxFlow graph.txt
+ *     jfr print --categories "Max Flow" run.jfr
+ */
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+public final class FlowEvents {
+    /* The number of augmentations reported by each AugmentationBatch. */
+    static final int AUGMENTATION_BATCH = 64;
+
+    private FlowEvents() {
+    }
+
+    @Name("maxflow.GraphLoad")
+    @Label("Graph Load")
+    @Category("Max Flow")
+    @Description("Loading a graph file")
+    public static final class GraphLoad extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Edges")
+        int edges;
+
+        @Label("File Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("maxflow.ScalingRound")
+    @Label("Scaling Round")
+    @Category("Max Flow")
+    @Description("One delta round of capacity-scaling Ford-Fulkerson")
+    public static final class ScalingRound extends Event {
+        @Label("Bit")
+        @Description("The round's delta is 2^bit")
+        int bit;
+
+        @Label("Flow")
+        @Description("The flow found so far")
+        long flow;
+
+        @Label("Arcs")
+        int arcs;
+
+        @Label("Augmenting Paths")
+        long paths;
+
+        @Label("Arcs Scanned")
+        long arcsScanned;
+    }
+
+    @Name("maxflow.AugmentationBatch")
+    @Label("Augmentation Batch")
+    @Category("Max Flow")
+    @Description("A batch of consecutive Ford-Fulkerson augmentations")
+    public static final class AugmentationBatch extends Event {
+        @Label("Flow")
+        @Description("The flow pushed by this run so far")
+        long flow;
+
+        @Label("Arcs")
+        int arcs;
+
+        @Label("Augmenting Paths")
+        long paths;
+
+        @Label("Arcs Scanned")
+        long arcsScanned;
+    }
+
+    @Name("maxflow.GlobalRelabel")
+    @Label("Global Relabel")
+    @Category("Max Flow")
+    @Description("One global relabel of push-relabel")
+    public static final class GlobalRelabel extends Event {
+        @Label("Flow")
+        @Description("The excess that has reached the sink so far")
+        long flow;
+
+        @Label("Arcs")
+        int arcs;
+
+        @Label("Levels Raised")
+        long levels;
+
+        @Label("Arcs Scanned")
+        long arcsScanned;
+    }
+}
@@ -0,0 +1,330 @@
+/*****************************************************************************
+ * File: FlowGraph.java
+ *
+ * An immutable, capacitated directed graph that serves as the one shared
+ * representation of an input file.  Every node is identified by a dense
+ * integer id in the range [0, numNodes()), and the i-th edge runs from
+ * tail(i) to head(i) with capacity capacity(i).  The three per-edge values
+ * are stored in parallel int arrays rather than as one object per edge, so a
+ * graph with m edges costs 12m bytes plus the node names.
+ *
+ * A FlowGraph is produced by a single streaming pass over the input (see
+ * EdgeListLoader), or by a generator through a FlowGraph.Builder.  The
+ * max-flow engines do not keep their own copies of the input; each one
+ * derives the working structure it mutates from this graph when it runs,
+ * and that structure becomes garbage as soon as it finishes.
+ *
+ * Parallel edges are permitted and are treated as a single edge whose
+ * capacity is the sum of their capacities.
+ */
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*; // For Arrays, NoSuchElementException
+
+public final class FlowGraph {
+    /* The endpoints and capacity of each edge, stored in parallel arrays.
+     * Only the first numEdges entries of each array are meaningful.
+     */
+    private final int[] tails;
+    private final int[] heads;
+    private final int[] capacities;
+    private final int numEdges;
+
+    /* The names of the nodes.  The dictionary is owned by the graph and is
+     * never added to once the graph has been constructed.
+     */
+    private final NodeDictionary names;
+
+    /**
+     * Loads the graph stored in the file at the given path, which may be
+     * an edge-list file, a binary graph file (see BinaryGraphFormat) or a
+     * compressed graph file (see CompressedGraphFormat).  If a GraphCache
+     * has been installed, the graph is loaded through it.
+     *
+     * @param path The path to the input file.
+     * @return The graph stored in that file.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static FlowGraph load(String path) throws IOException {
+        FlowEvents.GraphLoad event = new FlowEvents.GraphLoad();
+        event.begin();
+        GraphCache cache = GraphCache.installed();
+        FlowGraph result = (cache != null) ? cache.load(path) : read(path);
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.nodes = result.numNodes();
+            event.edges = result.numEdges();
+            event.bytes = Files.size(Paths.get(path));
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Does the work of load() without going through the cache, choosing the
+     * loader by the file's magic number.
+     */
+    static FlowGraph read(String path) throws IOException {
+        if (BinaryGraphFormat.isBinary(path))
+            return BinaryGraphFormat.load(path);
+        if (CompressedGraphFormat.isCompressed(path))
+            return CompressedGraphFormat.load(path);
+        return EdgeListLoader.load(path);
+    }
+
+    /**
+     * Constructs a graph that takes ownership of the given arrays.  The
+     * first numEdges entries of each array describe the edges.
+     *
+     * @param names The dictionary of node names.
+     * @param tails The start node of each edge.
+     * @param heads The end node of each edge.
+     * @param capacities The capacity of each edge.
+     * @param numEdges The number of edges stored in the arrays.
+     */
+    FlowGraph(NodeDictionary names, int[] tails, int[] heads, int[] capacities, int numEdges) {
+        this.names = names;
+        this.tails = tails;
+        this.heads = heads;
+        this.capacities = capacities;
+        this.numEdges = numEdges;
+    }
+
+    /**
+     * Accumulates the nodes and edges of a graph that is produced in memory,
+     * for instance by a generator, rather than loaded from a file.  Nodes are
+     * given ids in the order they are first named.  Once build() has been
+     * called the builder hands its arrays to the graph and can't be used
+     * again.
+     */
+    public static final class Builder {
+        private final NodeDictionary names = new NodeDictionary();
+        private int[] tails;
+        private int[] heads;
+        private int[] capacities;
+        private int numEdges = 0;
+        private boolean built = false;
+
+        /**
+         * Constructs an empty builder.
+         */
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * Constructs an empty builder with room for the given number of
+         * edges, so that the edge arrays rarely need to grow.
+         *
+         * @param expectedEdges The number of edges expected.
+         */
+        public Builder(int expectedEdges) {
+            int size = Math.max(16, expectedEdges);
+            tails = new int[size];
+            heads = new int[size];
+            capacities = new int[size];
+        }
+
+        /**
+         * Returns the id of the node with the given name, adding the node if
+         * it hasn't been named before.
+         *
+         * @param name The name of the node.
+         * @return The id of that node.
+         */
+        public int node(String name) {
+            checkNotBuilt();
+            return names.intern(name);
+        }
+
+        /**
+         * Adds an edge between two nodes that have already been named.
+         *
+         * @param tail The id of the start node.
+         * @param head The id of the end node.
+         * @param capacity The capacity of the edge.
+         * @throws IllegalArgumentException If either node doesn't exist or
+         *                                  the capacity is negative.
+         */
+        public void addEdge(int tail, int head, int capacity) {
+            checkNotBuilt();
+            if (tail < 0 || tail >= names.size() || head < 0 || head >= names.size())
+                throw new IllegalArgumentException("Edge " + tail + " -> " + head + " names a missing node.");
+            if (capacity < 0)
+                throw new IllegalArgumentException("Capacities must be non-negative.");
+
+            if (numEdges == tails.length) {
+                int size = tails.length * 2;
+                tails = Arrays.copyOf(tails, size);
+                heads = Arrays.copyOf(heads, size);
+                capacities = Arrays.copyOf(capacities, size);
+            }
+            tails[numEdges] = tail;
+            heads[numEdges] = head;
+            capacities[numEdges] = capacity;
+            ++numEdges;
+        }
+
+        /**
+         * Builds the graph.
+         *
+         * @return The graph holding every node and edge added so far.
+         */
+        public FlowGraph build() {
+            checkNotBuilt();
+            built = true;
+            return new FlowGraph(names, tails, heads, capacities, numEdges);
+        }
+
+        private void checkNotBuilt() {
+            if (built)
+                throw new IllegalStateException("The graph has already been built.");
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes.
+     */
+    public int numNodes() {
+        return names.size();
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * Returns the id of the start node of the given edge.
+     *
+     * @param edge The index of the edge.
+     * @return The id of its start node.
+     */
+    public int tail(int edge) {
+        return tails[edge];
+    }
+
+    /**
+     * Returns the id of the end node of the given edge.
+     *
+     * @param edge The index of the edge.
+     * @return The id of its end node.
+     */
+    public int head(int edge) {
+        return heads[edge];
+    }
+
+    /**
+     * Returns the capacity of the given edge.
+     *
+     * @param edge The index of the edge.
+     * @return The capacity of the edge.
+     */
+    public int capacity(int edge) {
+        return capacities[edge];
+    }
+
+    /* The backing arrays themselves, for structures built from this graph.
+     * Callers must treat them as read-only and must only look at the first
+     * numEdges() entries.
+     */
+    int[] tailArray() {
+        return tails;
+    }
+
+    int[] headArray() {
+        return heads;
+    }
+
+    int[] capacityArray() {
+        return capacities;
+    }
+
+    /**
+     * Returns the name of the node with the given id.
+     *
+     * @param id The id of the node.
+     * @return The name of that node.
+     */
+    public String name(int id) {
+        return names.name(id);
+    }
+
+    /**
+     * Returns the id of the node with the given name.
+     *
+     * @param name The name of the node.
+     * @return The id of that node.
+     * @throws NoSuchElementException If no node has that name.
+     */
+    public int id(String name) {
+        int id = names.find(name);
+        if (id < 0)
+            throw new NoSuchElementException("Node " + name + " does not exist.");
+        return id;
+    }
+
+    /**
+     * Builds a flow network with the structure of this graph and no flow,
+     * keyed by node id.  This is the working structure used by the
+     * Ford-Fulkerson engines.
+     *
+     * @return A flow network for this graph.
+     */
+    public FlowNetwork<Integer> toFlowNetwork() {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.BUILD);
+        FlowNetwork<Integer> result = new FlowNetwork<Integer>();
+
+        /* Copy over nodes. */
+        for (int node = 0; node < numNodes(); ++node)
+            result.addNode(node);
+
+        /* Copy over edges, merging parallel edges as we go. */
+        for (int e = 0; e < numEdges; ++e) {
+            FlowNetwork.Edge<Integer> edge = result.addEdge(tails[e], heads[e]);
+            edge.setCapacity(edge.getCapacity() + capacities[e]);
+        }
+        timer.exit(outer);
+        return result;
+    }
+
+    /**
+     * Builds a SimpleGraph with the structure of this graph and no flow.
+     * The vertex for the node with id i has id i and is stored in
+     * vertices[i], so the graph can be handed to the PreflowPush
+     * constructor that takes a SimpleGraph.
+     *
+     * @param vertices An array of length numNodes() to receive the vertices.
+     * @return A SimpleGraph for this graph.
+     */
+    public SimpleGraph toSimpleGraph(Vertex[] vertices) {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.BUILD);
+        SimpleGraph result = new SimpleGraph();
+
+        for (int node = 0; node < numNodes(); ++node)
+            vertices[node] = result.insertVertex(new VertexData(false), names.name(node));
+
+        for (int e = 0; e < numEdges; ++e) {
+            EdgeData data;
+            try {
+                data = new EdgeData(capacities[e], 0);
+            } catch (Exception ex) {
+                timer.exit(outer);
+                throw new IllegalArgumentException("Capacities must be non-negative.");
+            }
+            result.insertEdge(vertices[tails[e]], vertices[heads[e]], data,
+                              names.name(tails[e]) + names.name(heads[e]));
+        }
+        timer.exit(outer);
+        return result;
+    }
+}
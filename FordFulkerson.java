@@ -37,7 +37,7 @@
  * this algorithm, use it as a subroutine.
  */
 
-import java.util.*;        // For Deque
+import java.util.*;        // For Arrays, ArrayList, HashMap, List, Map
 
 public final class FordFulkerson {
     /**
@@ -53,6 +53,9 @@ public final class FordFulkerson {
      * @throws NoSuchElementException If s or t are not nodes in the graph.
      */
     public static <T> FlowNetwork<T> maxFlow(IntegralDirectedGraph<T> g, T s, T t) {
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.BUILD);
+
         /* Construct the structure of the resulting flow network. */
         FlowNetwork<T> result = new FlowNetwork<T>();
 
@@ -64,12 +67,30 @@ public final class FordFulkerson {
         for (T node: g)
             for (Map.Entry<T, Integer> edge: g.edgesFrom(node).entrySet())
                 result.addEdge(node, edge.getKey()).setCapacity(edge.getValue());
+        timer.exit(outer);
 
         /* Compute a max-flow in this flow network. */
         findMaxFlow(result, s, t);
         return result;
     }
 
+    /**
+     * Given a graph and a pair of node ids s and t, produces a maximum s-t
+     * flow in that graph.  The flow network is built directly from the
+     * shared graph, so no intermediate IntegralDirectedGraph is needed.
+     *
+     * @param g The graph to search.
+     * @param s The id of the start node of the flow.
+     * @param t The id of the end node of the flow.
+     * @return f A flow network for g, keyed by node id, containing a
+     *           maximum s/t flow.
+     */
+    public static FlowNetwork<Integer> maxFlow(FlowGraph g, int s, int t) {
+        FlowNetwork<Integer> result = g.toFlowNetwork();
+        findMaxFlow(result, s, t);
+        return result;
+    }
+
     /**
      * Given a flow network and a pair of nodes s and t, produces a maximum
      * s-t in that network.  Any flow that already exists in the input network
@@ -83,7 +104,7 @@ public final class FordFulkerson {
     public static <T> void findMaxFlow(FlowNetwork<T> g, T s, T t) {
         /* Confirm that s and t are valid. */
         if (!g.containsNode(s) || !g.containsNode(t))
-            throw new NoSuchElementException("Start and end nodes must be in hthe flow network!");
+            throw new NoSuchElementException("Start and end nodes must be in the flow network!");
 
         /* Silly edge-case check: we need to confirm that s and t aren't the
          * same node.  If they are, then the definition of a maximum s-t flow
@@ -95,156 +116,224 @@ public final class FordFulkerson {
          */
         if (isEqual(s, t)) return;
 
-        /* Next, construct the residual flow graph for this flow network.  We
-         * will continuously search it for augmenting paths.
+        /* Next, construct the residual flow graph for this flow network,
+         * starting from whatever flow the network already holds.  We will
+         * continuously search it for augmenting paths.
          */
-        ResidualGraph<T> gResidual = new ResidualGraph<T>(g);
+        Map<T, Integer> ids = new HashMap<T, Integer>();
+        List<FlowNetwork.Edge<T>> edges = new ArrayList<FlowNetwork.Edge<T>>();
+        CsrResidualGraph residual = CsrResidualGraph.forNetwork(g, ids, edges);
+        for (int e = 0; e < edges.size(); ++e)
+            residual.push(residual.edgeArc(e), edges.get(e).getFlow());
 
-        /* Continuously search for an augmenting path from s to t in the
-         * residual graph.  When none can be found, we'll get back the empty
-         * path, and so this loop will stop.
-         */
-        while (true) {
-            /* Find an augmenting s-t path in the residual graph. */
-            Deque<ResidualGraph.Edge<T>> path = findPath(s, t, gResidual);
-
-            /* If we didn't find a path (signaled by the above function handing
-             * back null), we're done.
-             */
-            if (path == null) break;
-
-            /* Augment along this path. */
-            augmentPath(path);
-        }
+        findMaxFlow(residual, ids.get(s), ids.get(t));
 
         /* We now have a max flow because no augmenting paths are left.  Take
          * the data from our residual graph and use it to fill in the flow in
          * the resulting flow network.
          */
-        for (T node: gResidual) {
-            for (ResidualGraph.Edge<T> edge: gResidual.edgesFrom(node)) {
-                /* If this is not an original edge, then its capacity is the
-                 * amount of flow pushed along the original edge in the graph.
-                 * Set this flow appropriately.
-                 */
-                if (!edge.isOriginal())
-                    g.getEdge(edge.getEnd(), edge.getStart()).setFlow(edge.getCapacity());
-            }
-        }
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.WRITE_BACK);
+        for (int e = 0; e < edges.size(); ++e)
+            edges.get(e).setFlow(residual.flow(e));
+        timer.exit(outer);
     }
 
     /**
-     * Given two objects, both possibly null, returns whether those objects
-     * are either both null or equal to one another.
+     * Given a residual graph in CSR form and a pair of node ids s and t,
+     * pushes flow across the graph until no augmenting s-t path remains.
+     * Any flow already present in the residual graph is used as a starting
+     * point, and the graph is left holding a maximum s-t flow.
      *
-     * @param one The first object.
-     * @param two The second object.
-     * @return Whether the two are equal, including the case where they're
-     *         both null.
+     * @param g The residual graph to search.
+     * @param s The id of the start node of the flow.
+     * @param t The id of the end node of the flow.
+     * @return The amount by which the s-t flow was increased.
      */
-    private static <T> boolean isEqual(T one, T two) {
-        /* If either are null, they're equal only if they're both null. */
-        if (one == null || two == null)
-            return one == null && two == null;
+    public static int findMaxFlow(CsrResidualGraph g, int s, int t) {
+        return findMaxFlow(g, s, t, 1, new PathSearch(g.numNodes()));
+    }
 
-        /* Otherwise they're both non-null and we can fall back on a standard
-         * comparison.
+    /**
+     * Given a residual graph in CSR form and a pair of node ids s and t,
+     * pushes flow along augmenting s-t paths made up only of arcs whose
+     * residual capacity is at least delta, until no such path remains.  With
+     * a delta of one this finds a maximum flow; FordFulkersonScaling calls
+     * it with ever smaller deltas, passing the same search every time.
+     *
+     * @param g The residual graph to search.
+     * @param s The id of the start node of the flow.
+     * @param t The id of the end node of the flow.
+     * @param delta The least residual capacity an arc must have to be used.
+     * @param search The scratch space for the searches, sized for g.
+     * @return The amount by which the s-t flow was increased.
+     */
+    static int findMaxFlow(CsrResidualGraph g, int s, int t, int delta, PathSearch search) {
+        /* As above, the max flow from a node to itself is zero. */
+        if (s == t) return 0;
+
+        int[] parentArc = search.parentArc;
+        SolverStats stats = SolverStats.current();
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.SOLVE);
+
+        /* Augmentations are reported to the flight recorder in batches.  The
+         * last batch also covers the final, failed search.
          */
-        return one.equals(two);
+        FlowEvents.AugmentationBatch batch = new FlowEvents.AugmentationBatch();
+        batch.begin();
+        long batchPaths = stats.augmentingPaths;
+        long batchScanned = stats.arcsScanned;
+
+        int total = 0;
+        while (search.findPath(g, s, t, delta, stats)) {
+            /* Find the bottleneck capacity along the path by walking back
+             * from t along the parent arcs, then push that much flow.
+             */
+            int capacity = Integer.MAX_VALUE;
+            for (int node = t; node != s; node = g.tail(parentArc[node]))
+                capacity = Math.min(capacity, g.residual(parentArc[node]));
+            for (int node = t; node != s; node = g.tail(parentArc[node]))
+                g.push(parentArc[node], capacity);
+
+            total += capacity;
+            ++stats.augmentingPaths;
+
+            if (stats.augmentingPaths - batchPaths == FlowEvents.AUGMENTATION_BATCH) {
+                commitBatch(batch, g, total, stats.augmentingPaths - batchPaths,
+                            stats.arcsScanned - batchScanned);
+                batch = new FlowEvents.AugmentationBatch();
+                batch.begin();
+                batchPaths = stats.augmentingPaths;
+                batchScanned = stats.arcsScanned;
+            }
+        }
+        commitBatch(batch, g, total, stats.augmentingPaths - batchPaths,
+                    stats.arcsScanned - batchScanned);
+        timer.exit(outer);
+        return total;
     }
 
     /**
-     * Searches for a path between the start node and the destination node.
-     * If such a path exists, the list of edges in it is returned.  Otherwise,
-     * null is returned to signal that no path exists.
+     * Reports a batch of augmentations to the flight recorder, if it is
+     * recording them.
      *
-     * @param start The starting node of the search.
-     * @param dest The destination node of the search.
-     * @param graph The residual graph to search in.
-     * @return An augmenting path in the graph, or null if none exists.
+     * @param batch The event for the batch.
+     * @param g The residual graph being searched.
+     * @param flow The flow pushed by the run so far.
+     * @param paths The number of augmenting paths in the batch.
+     * @param scanned The number of arcs scanned during the batch.
      */
-    private static <T> Deque<ResidualGraph.Edge<T>> findPath(T start, T dest,
-                                              ResidualGraph<T> graph) {
-        /* Construct a set of visited nodes so we don't hit the same node
-         * twice, then fire off a standard DFS using that set.
-         */
-        return findPathRec(start, dest, graph, new HashSet<T>());
+    private static void commitBatch(FlowEvents.AugmentationBatch batch, CsrResidualGraph g,
+                                    int flow, long paths, long scanned) {
+        if (!batch.shouldCommit()) return;
+
+        batch.flow = flow;
+        batch.arcs = g.numArcs();
+        batch.paths = paths;
+        batch.arcsScanned = scanned;
+        batch.commit();
     }
 
     /**
-     * Recursively explores a residual graph, starting at the node indicated
-     * by start and searching for a particular destination node.  If a path is
-     * found, it is returned.  Otherwise, null is returned.
+     * The scratch space for a run of depth-first searches over one residual
+     * graph, allocated once and reused by every search, and by every round
+     * of a scaling run, so that the search loop allocates nothing.
      *
-     * @param start The starting node of the search.
-     * @param dest The destination node of the search.
-     * @param graph The residual graph to search in.
-     * @param visited The set of nodes previously visited by the search.
-     * @return An augmenting path in the graph, or null if none exists.
+     * Rather than clearing a visited flag on every node before each search,
+     * each search takes a new epoch number, and a node has been visited by
+     * the current search iff its mark equals the current epoch.  The marks
+     * only need clearing when the epoch counter wraps around.
      */
-    private static <T> Deque<ResidualGraph.Edge<T>> findPathRec(T start, T dest,
-                                                 ResidualGraph<T> graph,
-                                                 Set<T> visited) {
-        /* Base cases - if we've been here before, no path can be found, since
-         * if one existed we would have already found it.
-         */
-        if (visited.contains(start)) return null;
+    static final class PathSearch {
+        /* The arc used to reach each node in the last search. */
+        final int[] parentArc;
 
-        /* Otherwise, mark that we've been here. */
-        visited.add(start);
+        private final int[] mark;
+        private final int[] stack;
+        private int epoch = 0;
 
-        /* Other base case - if we hit the destination, then the path is the
-         * trivial empty path from the start node to itself.
+        /**
+         * Constructs the scratch space for searching a graph with the given
+         * number of nodes.
+         *
+         * @param numNodes The number of nodes in the graph.
          */
-        if (isEqual(start, dest))
-            return new ArrayDeque<ResidualGraph.Edge<T>>();
+        PathSearch(int numNodes) {
+            parentArc = new int[numNodes];
+            mark = new int[numNodes];
+            stack = new int[numNodes];
+        }
 
-        /* Otherwise, recursively explore outward from this node, seeing if
-         * we can find any path.
+        /**
+         * Searches a CSR residual graph for a path from s to t using only
+         * arcs with a residual capacity of at least delta.  The search is a
+         * depth-first search driven by an explicit stack, so long paths
+         * cannot overflow the call stack.  If a path is found, parentArc[v]
+         * holds the arc used to reach each node v on it.
+         *
+         * @param g The residual graph to search.
+         * @param s The start node of the search.
+         * @param t The destination node of the search.
+         * @param delta The least residual capacity an arc must have to be
+         *              used.
+         * @param stats The counters to report the arcs scanned to.
+         * @return Whether a path was found.
          */
-        for (ResidualGraph.Edge<T> edge: graph.edgesFrom(start)) {
-            /* If this edge has no capacity, we can't continue the search
-             * along it.
-             */
-            if (edge.getCapacity() == 0) continue;
+        boolean findPath(CsrResidualGraph g, int s, int t, int delta, SolverStats stats) {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                epoch = 1;
+            }
 
-            /* Recursively explore outward. */
-            Deque<ResidualGraph.Edge<T>> result = findPathRec(edge.getEnd(), dest,
-                                               graph, visited);
+            int top = 0;
+            stack[top++] = s;
+            mark[s] = epoch;
 
-            /* If we found a path, then the real path would be this edge,
-             * followed by that path.
-             */
-            if (result != null) {
-                result.addFirst(edge);
-                return result;
+            long scanned = 0;
+            boolean found = false;
+            while (top > 0) {
+                int node = stack[--top];
+                if (node == t) {
+                    found = true;
+                    break;
+                }
+
+                /* Each node is pushed at most once, since it is marked when
+                 * pushed, so the stack never holds more than n nodes.
+                 */
+                scanned += g.endArc(node) - g.firstArc(node);
+                for (int arc = g.firstArc(node); arc < g.endArc(node); ++arc) {
+                    int next = g.head(arc);
+                    if (mark[next] == epoch || g.residual(arc) < delta) continue;
+
+                    mark[next] = epoch;
+                    parentArc[next] = arc;
+                    stack[top++] = next;
+                }
             }
+            stats.arcsScanned += scanned;
+            return found;
         }
-
-        /* If we arrived here, then none of the outgoing edges can reach the
-         * destination and no path exists.
-         */
-        return null;
     }
 
     /**
-     * Augments the flow along an augmenting path by the minimum remaining
-     * capacity along some edge.
+     * Given two objects, both possibly null, returns whether those objects
+     * are either both null or equal to one another.
      *
-     * @param path The augmenting path.
+     * @param one The first object.
+     * @param two The second object.
+     * @return Whether the two are equal, including the case where they're
+     *         both null.
      */
-    private static <T> void augmentPath(Deque<ResidualGraph.Edge<T>> path) {
-        /* First, determine the smallest capacity of this path; that's the
-         * amount we're going to augment by.  Initially we'll say that this is
-         * the maximum amount possible; this value will get overwritten the
-         * first time we visit a node.
-         */
-        int capacity = Integer.MAX_VALUE;
-        for (ResidualGraph.Edge<T> edge: path)
-            capacity = Math.min(capacity, edge.getCapacity());
+    private static <T> boolean isEqual(T one, T two) {
+        /* If either are null, they're equal only if they're both null. */
+        if (one == null || two == null)
+            return one == null && two == null;
 
-        /* Push this much flow across all the nodes. */
-        for (ResidualGraph.Edge<T> edge: path)
-            edge.addFlow(capacity);
+        /* Otherwise they're both non-null and we can fall back on a standard
+         * comparison.
+         */
+        return one.equals(two);
     }
-}
\ No newline at end of file
+}
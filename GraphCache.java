@@ -0,0 +1,241 @@
+/*****************************************************************************
+ * File: GraphCache.java
+ *
+ * An on-disk cache of parsed graphs, so that a sweep that loads the same
+ * text files run after run only parses each of them once.  Every entry is a
+ * binary graph file (see BinaryGraphFormat) holding the parsed graph with
+ * its edges in their original order, so a graph loaded from the cache is
+ * identical to the one the parser would have produced.
+ *
+ * Entries are keyed by the SHA-256 hash of the source file's contents and
+ * by the version of the binary format, and are named
+ *
+ *     <hash>.v<version>.mfg
+ *
+ * in the cache directory.  A file that is moved, copied or touched still
+ * hits the cache, one that is edited in place misses it, and entries
+ * written by an older version of the format are never read.  Hashing a file
+ * is far cheaper than parsing it, and a hit costs little more than mapping
+ * the entry (see BinaryGraphFormat).
+ *
+ * The cache is bounded in size.  Every hit marks its entry as recently used
+ * by bumping its modification time, and after every new entry is written
+ * the least recently used entries are deleted until the cache fits again.
+ * An entry that wouldn't fit on its own is never written.  Entries are
+ * written under a temporary name and moved into place, so several threads
+ * or processes may share one cache directory; a damaged entry is deleted
+ * and its graph parsed again.
+ *
+ * Only edge-list files are cached, since binary and compressed graph files
+ * are already cheap to load.  Once a cache has been installed, FlowGraph.load
+ * goes through it; Benchmark and CorpusRunner install one when given -cache.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*; // For ArrayList, Comparator, List
+
+public final class GraphCache {
+    /* The size of the buffer used when hashing a file. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /* The size bound used when none is given, 1GB. */
+    static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    /* The suffix of every entry. */
+    private static final String SUFFIX = ".mfg";
+
+    /* The cache FlowGraph.load goes through, if any. */
+    private static volatile GraphCache installed;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * Constructs a cache in the given directory, creating the directory if
+     * need be, and evicts entries until it fits in the given size.
+     *
+     * @param directory The directory holding the cache entries.
+     * @param maxBytes The most bytes the entries may take up in all.
+     * @throws IOException If the directory can't be created or read.
+     */
+    public GraphCache(String directory, long maxBytes) throws IOException {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("A cache can't hold " + maxBytes + " bytes.");
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Makes FlowGraph.load go through the given cache, or through no cache
+     * if it is null.
+     *
+     * @param cache The cache to use.
+     */
+    public static void install(GraphCache cache) {
+        installed = cache;
+    }
+
+    /**
+     * Returns the cache FlowGraph.load goes through, or null if there is
+     * none.
+     *
+     * @return The installed cache.
+     */
+    public static GraphCache installed() {
+        return installed;
+    }
+
+    /**
+     * Loads the graph stored in the file at the given path, from the cache
+     * if it is there and otherwise by parsing it and adding it to the cache.
+     *
+     * @param path The path to the input file.
+     * @return The graph stored in that file.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public FlowGraph load(String path) throws IOException {
+        if (BinaryGraphFormat.isBinary(path) || CompressedGraphFormat.isCompressed(path))
+            return FlowGraph.read(path);
+
+        PhaseTimer timer = PhaseTimer.current();
+        PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.PARSE);
+        Path entry;
+        try {
+            entry = directory.resolve(hash(path) + ".v" + BinaryGraphFormat.VERSION + SUFFIX);
+        } finally {
+            timer.exit(outer);
+        }
+
+        try {
+            FlowGraph g = BinaryGraphFormat.load(entry.toString());
+            touch(entry);
+            return g;
+        } catch (NoSuchFileException e) {
+            /* A miss, or an entry evicted since we looked. */
+        } catch (IOException e) {
+            Files.deleteIfExists(entry);
+        }
+
+        FlowGraph g = EdgeListLoader.load(path);
+        store(g, entry);
+        return g;
+    }
+
+    /**
+     * Returns the total size of the entries in the cache, in bytes.
+     *
+     * @return The size of the cache.
+     * @throws IOException If the directory can't be read.
+     */
+    public long size() throws IOException {
+        long total = 0;
+        for (Entry entry: entries())
+            total += entry.bytes;
+        return total;
+    }
+
+    /* Writes a new entry and then evicts entries until the cache fits.  The
+     * entry is written by a temporary name, so that no reader ever sees it
+     * half written.
+     */
+    private void store(FlowGraph g, Path entry) throws IOException {
+        Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            BinaryGraphFormat.write(g, temporary.toString(), true);
+            if (Files.size(temporary) > maxBytes)
+                return;
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict();
+    }
+
+    /* Deletes the least recently used entries until the cache fits. */
+    private synchronized void evict() throws IOException {
+        List<Entry> entries = entries();
+        long total = 0;
+        for (Entry entry: entries)
+            total += entry.bytes;
+        entries.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        for (int i = 0; i < entries.size() && total > maxBytes; ++i) {
+            Files.deleteIfExists(entries.get(i).path);
+            total -= entries.get(i).bytes;
+        }
+    }
+
+    /**
+     * An entry in the cache directory, with its size and time of last use
+     * as they were when the directory was listed.
+     */
+    private static final class Entry {
+        private final Path path;
+        private final long bytes;
+        private final long lastUsed;
+
+        Entry(Path path, long bytes, long lastUsed) {
+            this.path = path;
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /* Lists the entries.  One that goes while it is being listed is left
+     * out.
+     */
+    private List<Entry> entries() throws IOException {
+        List<Entry> result = new ArrayList<Entry>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file: files) {
+                try {
+                    result.add(new Entry(file, Files.size(file),
+                                         Files.getLastModifiedTime(file).toMillis()));
+                } catch (NoSuchFileException e) {
+                    /* Evicted by someone else. */
+                }
+            }
+        }
+        return result;
+    }
+
+    /* Marks an entry as just used.  It may already have been evicted. */
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            /* Losing track of one use does no harm. */
+        }
+    }
+
+    /* Returns the SHA-256 hash of a file's contents, in hexadecimal. */
+    private static String hash(String path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform is required to support SHA-256. */
+            throw new AssertionError(e);
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buf) >= 0) {
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b: digest.digest())
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
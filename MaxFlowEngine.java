@@ -0,0 +1,85 @@
+/*****************************************************************************
+ * File: MaxFlowEngine.java
+ *
+ * The max-flow engines that can be run against a CsrResidualGraph, gathered
+ * into one enumeration so that drivers such as Benchmark can select engines
+ * by name and run each of them the same way.  Every engine takes the ids of
+ * the source and sink and leaves a maximum flow in the residual graph.
+ *
+ * Callers that run several engines (or one engine several times) against the
+ * same residual graph must call reset() on it between runs, since most of the
+ * engines build on whatever flow the graph already holds.
+ */
+import java.util.*; // For Locale, NoSuchElementException
+
+public enum MaxFlowEngine {
+    FORD_FULKERSON("Ford Fulkerson") {
+        public int solve(CsrResidualGraph g, int s, int t) {
+            return FordFulkerson.findMaxFlow(g, s, t);
+        }
+    },
+    SCALING_FORD_FULKERSON("Scaling Ford Fulkerson") {
+        public int solve(CsrResidualGraph g, int s, int t) {
+            return FordFulkersonScaling.findMaxFlow(g, s, t);
+        }
+    },
+    PREFLOW_PUSH("Preflow Push") {
+        public int solve(CsrResidualGraph g, int s, int t) {
+            return PreflowPush.findMaxFlow(g, s, t);
+        }
+    },
+    EDMONDS_KARP("Edmonds Karp") {
+        public int solve(CsrResidualGraph g, int s, int t) {
+            return EdmondsKarp.findMaxFlow(g, s, t);
+        }
+    },
+    DINIC("Dinic") {
+        public int solve(CsrResidualGraph g, int s, int t) {
+            return Dinic.findMaxFlow(g, s, t);
+        }
+    };
+
+    private final String displayName;
+
+    private MaxFlowEngine(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Computes a maximum s-t flow in the given residual graph, which should
+     * hold no flow.
+     *
+     * @param g The residual graph to work on.
+     * @param s The id of the source node.
+     * @param t The id of the sink node.
+     * @return The value of the maximum flow.
+     */
+    public abstract int solve(CsrResidualGraph g, int s, int t);
+
+    /**
+     * Returns the human-readable name of the engine, as used in the column
+     * headers of our plots.
+     *
+     * @return The name of the engine.
+     */
+    public String displayName() {
+        return displayName;
+    }
+
+    /**
+     * Looks up an engine by name.  Case and the difference between spaces,
+     * dashes and underscores are ignored, so "dinic", "Preflow Push" and
+     * "scaling-ford-fulkerson" are all accepted.
+     *
+     * @param name The name of the engine.
+     * @return The engine with that name.
+     * @throws NoSuchElementException If no engine has that name.
+     */
+    public static MaxFlowEngine forName(String name) {
+        String key = name.trim().toUpperCase(Locale.ROOT).replace(' ', '_').replace('-', '_');
+        for (MaxFlowEngine engine: values())
+            if (engine.name().equals(key))
+                return engine;
+        throw new NoSuchElementException("No engine is named " + name + ".");
+    }
+}
@@ -0,0 +1,115 @@
+/*****************************************************************************
+ * File: MemoryProbe.java
+ *
+ * Measurements of how much memory the graph representations and engines
+ * use.  There are two measurements:
+ *
+ *   allocatedBytes() - The total number of bytes the calling thread has
+ *                      allocated so far, read from the JVM's per-thread
+ *                      allocation counter.  The difference between two
+ *                      readings is the amount allocated in between, whether
+ *                      or not it is still reachable, and is unaffected by
+ *                      other threads.
+ *
+ *   retainedBytes()  - The growth in the live heap caused by building some
+ *                      structure and holding on to it.  The heap is
+ *                      collected until it settles while the structure is
+ *                      held and again once it is dropped, so garbage
+ *                      created along the way is not counted.  A full
+ *                      collection leaves every live object outside the eden
+ *                      space, so only the other pools are counted; that
+ *                      keeps out the allocations made by the measurement
+ *                      itself, which land in eden.  This measures the whole
+ *                      heap, so it is only meaningful while no other thread
+ *                      is allocating, and it is rounded to the collector's
+ *                      allocation unit (whole regions for G1's humongous
+ *                      objects).
+ *
+ * The per-thread allocation counter is specific to HotSpot-derived JVMs
+ * (com.sun.management.ThreadMXBean).  Where it isn't available,
+ * allocatedBytes() returns -1.
+ */
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.util.*; // For ArrayList, List
+import java.util.function.*; // For Supplier
+
+public final class MemoryProbe {
+    /* The heap pools that hold objects surviving a full collection. */
+    private static final List<MemoryPoolMXBean> TENURED_POOLS = tenuredPools();
+
+    /* The allocation counter, or null if this JVM doesn't provide one. */
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+    /* The most full collections to run while waiting for the heap to settle. */
+    private static final int MAX_COLLECTIONS = 8;
+
+    /**
+     * Returns the total number of bytes allocated by the calling thread so
+     * far, or -1 if the JVM can't report it.
+     *
+     * @return The number of bytes allocated by the calling thread.
+     */
+    public static long allocatedBytes() {
+        if (ALLOCATION == null) return -1;
+        return ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Builds a structure and returns by how much it grew the live heap.
+     *
+     * @param build Builds the structure to measure.
+     * @return The number of bytes the structure retains.
+     */
+    public static long retainedBytes(Supplier<?> build) {
+        /* Measure the heap with the structure and again once it has been
+         * dropped, rather than before and after building it.  Garbage left
+         * over from earlier work may survive the first round of collections
+         * and be freed during a later one; measuring the drop keeps that
+         * from being subtracted from the structure's size.
+         */
+        Object[] holder = { build.get() };
+        long with = settledHeapUsed();
+        Reference.reachabilityFence(holder);
+        holder[0] = null;
+        long without = settledHeapUsed();
+        return Math.max(0, with - without);
+    }
+
+    /* Collects garbage until the heap in use stops shrinking, and returns
+     * the amount in use outside eden.
+     */
+    private static long settledHeapUsed() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < MAX_COLLECTIONS; ++i) {
+            System.gc();
+            long now = 0;
+            for (MemoryPoolMXBean pool: TENURED_POOLS)
+                now += pool.getUsage().getUsed();
+            if (now >= used) return now;
+            used = now;
+        }
+        return used;
+    }
+
+    private static List<MemoryPoolMXBean> tenuredPools() {
+        List<MemoryPoolMXBean> result = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && !pool.getName().contains("Eden"))
+                result.add(pool);
+        return result;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) threads;
+        if (!result.isThreadAllocatedMemorySupported()) return null;
+        if (!result.isThreadAllocatedMemoryEnabled())
+            result.setThreadAllocatedMemoryEnabled(true);
+        return result;
+    }
+}
@@ -0,0 +1,262 @@
+/*****************************************************************************
+ * File: MeshGraph.java
+ *
+ * A generator for mesh flow networks.  The nodes (i,j) form a grid of rows
+ * and columns.  The source feeds the first column, the last column feeds
+ * the sink, every node feeds its right-hand neighbour, and vertically
+ * adjacent nodes are joined in both directions.  The edges come out in the
+ * same order as in the checked-in mesh files:
+ *
+ *     s (i,1) c          for every row i
+ *     (i,j) (i,j+1) c    column by column, for every row i
+ *     (i,j) (i+1,j) c    column by column, for every row i but the last,
+ *     (i+1,j) (i,j) c    each followed by its reverse
+ *     (i,C) t c          for every row i
+ *
+ * Every edge gets its own capacity, drawn uniformly from a range.  A graph
+ * is described by the same names the existing files use:
+ *
+ *     Rr_Cc_Xco       R rows and C columns, every capacity X
+ *     Rr_Cc_Xra       R rows and C columns, capacities from [1, X]
+ *     mesh_highrow_X  100 rows and 10 columns, capacities from [X, X + 99]
+ *     mesh_lowrow_X   10 rows and 100 columns, capacities from [X, X + 99]
+ *
+ * The edges are streamed to an EdgeSink in order, so writing a mesh to a
+ * file takes no memory beyond the output buffer however large it is.
+ *
+ * Usage: java MeshGraph [-seed N] [-echo] [-rows R] [-cols C] name [file]
+ *
+ * -rows and -cols override the size given by the name, and the file
+ * defaults to the name.  The FlowGraph classes live in the parent
+ * directory, so compile and run with it on the class path:
+ *
+ *     javac -cp .. MeshGraph.java
+ *     java -cp .:.. MeshGraph -seed 1 1000r_1000c_100ra
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*; // For Random
+import java.util.regex.*; // For Matcher, Pattern
+
+public final class MeshGraph {
+    /* The names of the two families of mesh graphs. */
+    private static final Pattern GRID = Pattern.compile("(\\d+)r_(\\d+)c_(\\d+)(co|ra)");
+    private static final Pattern FAMILY = Pattern.compile("mesh_(high|low)row_(\\d+)(?:\\.txt)?");
+
+    /* The shape and capacities of a mesh, as given by its name. */
+    private final int rows;
+    private final int cols;
+    private final int minCapacity;
+    private final int maxCapacity;
+
+    /**
+     * Constructs a mesh with the given shape and range of capacities.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @param minCapacity The smallest capacity to give an edge.
+     * @param maxCapacity The largest capacity to give an edge.
+     * @throws IllegalArgumentException If the mesh is empty or the range of
+     *                                  capacities is empty or negative.
+     */
+    public MeshGraph(int rows, int cols, int minCapacity, int maxCapacity) {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("A mesh needs at least one row and one column.");
+        if ((long) rows * cols + 2 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("A mesh with " + rows + " rows and " + cols + " columns is too large.");
+        if (minCapacity < 0 || maxCapacity < minCapacity)
+            throw new IllegalArgumentException("Capacities must satisfy 0 <= minCapacity <= maxCapacity.");
+        this.rows = rows;
+        this.cols = cols;
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * Returns the mesh described by a name such as 100r_100c_1co or
+     * mesh_lowrow_55.
+     *
+     * @param name The name of the mesh.
+     * @return The mesh with that name.
+     * @throws IllegalArgumentException If the name doesn't describe a mesh.
+     */
+    public static MeshGraph forName(String name) {
+        Matcher grid = GRID.matcher(name);
+        if (grid.matches()) {
+            int x = Integer.parseInt(grid.group(3));
+            return new MeshGraph(Integer.parseInt(grid.group(1)), Integer.parseInt(grid.group(2)),
+                                 grid.group(4).equals("co") ? x : 1, x);
+        }
+
+        Matcher family = FAMILY.matcher(name);
+        if (family.matches()) {
+            int x = Integer.parseInt(family.group(2));
+            boolean high = family.group(1).equals("high");
+            return new MeshGraph(high ? 100 : 10, high ? 10 : 100, x, x + 99);
+        }
+        throw new IllegalArgumentException("No mesh is named " + name + ".");
+    }
+
+    /**
+     * Returns a mesh with the same capacities as this one and a new shape.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @return A mesh of that shape.
+     */
+    public MeshGraph resize(int rows, int cols) {
+        return new MeshGraph(rows, cols, minCapacity, maxCapacity);
+    }
+
+    /**
+     * Returns the number of nodes in the mesh, including s and t.
+     *
+     * @return The number of nodes.
+     */
+    public int numNodes() {
+        return rows * cols + 2;
+    }
+
+    /**
+     * Returns the number of edges in the mesh.
+     *
+     * @return The number of edges.
+     */
+    public long numEdges() {
+        return 2L * rows + (long) rows * (cols - 1) + 2L * (rows - 1) * cols;
+    }
+
+    /**
+     * Generates the mesh and hands its edges to a sink in order.  The nodes
+     * are numbered s = 0, (i,j) = (j - 1) * rows + i and t = rows * cols + 1.
+     *
+     * @param seed The seed for the random number generator.
+     * @param sink Receives the edges.
+     */
+    public void generate(long seed, EdgeSink sink) throws IOException {
+        Random random = new Random(seed);
+        int t = rows * cols + 1;
+
+        for (int i = 1; i <= rows; ++i)
+            sink.edge(0, node(i, 1), capacity(random));
+        for (int j = 1; j < cols; ++j)
+            for (int i = 1; i <= rows; ++i)
+                sink.edge(node(i, j), node(i, j + 1), capacity(random));
+        for (int j = 1; j <= cols; ++j) {
+            for (int i = 1; i < rows; ++i) {
+                sink.edge(node(i, j), node(i + 1, j), capacity(random));
+                sink.edge(node(i + 1, j), node(i, j), capacity(random));
+            }
+        }
+        for (int i = 1; i <= rows; ++i)
+            sink.edge(node(i, cols), t, capacity(random));
+    }
+
+    /**
+     * Generates the mesh and writes it to a file.
+     *
+     * @param path The path to write to.
+     * @param seed The seed for the random number generator.
+     * @param echo Whether to copy the output to standard output as well.
+     */
+    public void write(String path, long seed, boolean echo) throws IOException {
+        try (EdgeListWriter out = new EdgeListWriter(path, echo)) {
+            generate(seed, (tail, head, capacity) -> {
+                writeNode(out, tail);
+                out.space();
+                writeNode(out, head);
+                out.space().number(capacity).endLine();
+            });
+        }
+    }
+
+    /**
+     * Generates the mesh straight into memory.
+     *
+     * @param seed The seed for the random number generator.
+     * @return The generated graph.
+     */
+    public FlowGraph toFlowGraph(long seed) {
+        /* Name the nodes in numbering order, so that the ids match. */
+        FlowGraph.Builder builder = new FlowGraph.Builder((int) Math.min(numEdges(), 1 << 30));
+        for (int node = 0; node < numNodes(); ++node)
+            builder.node(nodeName(node));
+
+        try {
+            generate(seed, builder::addEdge);
+        } catch (IOException e) {
+            /* Adding to a builder can't fail this way. */
+            throw new UncheckedIOException(e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the name of the node with the given number.
+     *
+     * @param node The number of the node.
+     * @return Its name.
+     */
+    public String nodeName(int node) {
+        if (node == 0) return "s";
+        if (node == rows * cols + 1) return "t";
+        return "(" + row(node) + "," + col(node) + ")";
+    }
+
+    private void writeNode(EdgeListWriter out, int node) throws IOException {
+        if (node == 0)
+            out.text('s');
+        else if (node == rows * cols + 1)
+            out.text('t');
+        else
+            out.text('(').number(row(node)).text(',').number(col(node)).text(')');
+    }
+
+    private int node(int i, int j) {
+        return (j - 1) * rows + i;
+    }
+
+    private int row(int node) {
+        return (node - 1) % rows + 1;
+    }
+
+    private int col(int node) {
+        return (node - 1) / rows + 1;
+    }
+
+    private int capacity(Random random) {
+        if (minCapacity == maxCapacity) return minCapacity;
+        return minCapacity + random.nextInt(maxCapacity - minCapacity + 1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = new Random().nextLong();
+        boolean echo = false;
+        int rows = -1;
+        int cols = -1;
+
+        int arg = 0;
+        for (; arg < args.length && args[arg].startsWith("-"); ++arg) {
+            if (args[arg].equals("-echo"))
+                echo = true;
+            else if (args[arg].equals("-seed") && arg + 1 < args.length)
+                seed = Long.parseLong(args[++arg]);
+            else if (args[arg].equals("-rows") && arg + 1 < args.length)
+                rows = Integer.parseInt(args[++arg]);
+            else if (args[arg].equals("-cols") && arg + 1 < args.length)
+                cols = Integer.parseInt(args[++arg]);
+            else
+                break;
+        }
+        if (args.length - arg < 1 || args.length - arg > 2) {
+            System.err.println("Usage: java MeshGraph [-seed N] [-echo] [-rows R] [-cols C] name [file]");
+            System.exit(1);
+        }
+
+        String name = args[arg];
+        MeshGraph mesh = forName(name);
+        if (rows > 0 || cols > 0)
+            mesh = mesh.resize(rows > 0 ? rows : mesh.rows, cols > 0 ? cols : mesh.cols);
+        mesh.write(arg + 1 < args.length ? args[arg + 1] : name, seed, echo);
+    }
+}
@@ -0,0 +1,231 @@
+/*****************************************************************************
+ * File: NodeDictionary.java
+ *
+ * A dictionary that interns node names into dense integer ids.  The first
+ * distinct name seen is given id 0, the next id 1, and so on, so the ids of
+ * a dictionary holding n names are exactly 0 through n - 1 and can be used
+ * directly as array indices.  Names are translated to ids once, when a graph
+ * is loaded or generated, and from then on every engine works purely in
+ * terms of ids; the dictionary is consulted again only to report results.
+ *
+ * Internally the dictionary is an open-addressing hash table over the raw
+ * UTF-8 bytes of each name.  Names can be interned straight out of a byte
+ * buffer (for instance, a memory-mapped input file) and interning a name that
+ * has already been seen allocates nothing.  A String is only built for a
+ * name the first time someone asks for it by id.
+ */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*; // For Arrays
+
+public final class NodeDictionary {
+    /* The bytes of every distinct name, concatenated.  The name with id i
+     * occupies pool[offsets[i]] up to pool[offsets[i + 1]].
+     */
+    private byte[] pool;
+    private int[] offsets;
+    private int[] hashes;
+    private int size = 0;
+
+    /* The hash table proper.  Each slot holds one plus the id of the name
+     * stored there, or zero if the slot is empty.
+     */
+    private int[] slots;
+
+    /* Strings for the names that have been asked for by id, built lazily. */
+    private String[] names;
+
+    /**
+     * Constructs an empty dictionary.
+     */
+    public NodeDictionary() {
+        this(64, 1024);
+    }
+
+    /**
+     * Constructs an empty dictionary with room for the given number of
+     * names and bytes of name text, so that it rarely needs to grow.
+     *
+     * @param expectedNames The number of names expected.
+     * @param expectedBytes The total length in bytes of the names expected.
+     */
+    public NodeDictionary(int expectedNames, int expectedBytes) {
+        int capacity = Math.max(64, expectedNames);
+        pool = new byte[Math.max(1024, expectedBytes)];
+        offsets = new int[capacity + 1];
+        hashes = new int[capacity];
+        names = new String[capacity];
+
+        /* Keep the table at most half full, as rehash() does. */
+        int numSlots = 128;
+        while (numSlots < 2 * capacity && numSlots < (1 << 30))
+            numSlots *= 2;
+        slots = new int[numSlots];
+    }
+
+    /**
+     * Returns the id of the name stored in buf[off, off + len), assigning a
+     * fresh id if the name has not been seen before.  The buffer's position
+     * and limit are not used or modified.
+     *
+     * @param buf The buffer holding the name.
+     * @param off The index of the first byte of the name.
+     * @param len The length of the name in bytes.
+     * @return The id of the name.
+     */
+    public int intern(ByteBuffer buf, int off, int len) {
+        return intern(buf, off, len, hash(buf, off, len));
+    }
+
+    /**
+     * Interns every name in another dictionary, in order of id, so that the
+     * names new to this dictionary get ids in the order they had there.
+     *
+     * @param other The dictionary whose names should be interned.
+     * @return An array giving, for each id in the other dictionary, the id
+     *         of the same name in this one.
+     */
+    int[] internAll(NodeDictionary other) {
+        ByteBuffer pool = ByteBuffer.wrap(other.pool);
+        int[] ids = new int[other.size];
+        for (int id = 0; id < other.size; ++id) {
+            int start = other.offsets[id];
+            ids[id] = intern(pool, start, other.offsets[id + 1] - start, other.hashes[id]);
+        }
+        return ids;
+    }
+
+    /**
+     * Does the work of intern() for a name whose hash is already known.
+     */
+    private int intern(ByteBuffer buf, int off, int len, int hash) {
+        int slot = find(buf, off, len, hash);
+        if (slots[slot] != 0)
+            return slots[slot] - 1;
+
+        int id = add(buf, off, len, hash);
+        slots[slot] = id + 1;
+        if (2 * size > slots.length)
+            rehash();
+        return id;
+    }
+
+    /**
+     * Returns the id of the given name, assigning a fresh id if the name has
+     * not been seen before.
+     *
+     * @param name The name to intern.
+     * @return The id of the name.
+     */
+    public int intern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Returns the id of the given name, or -1 if the name is not in the
+     * dictionary.
+     *
+     * @param name The name to look up.
+     * @return The id of the name, or -1 if there is none.
+     */
+    public int find(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        return slots[find(buf, 0, bytes.length, hash(buf, 0, bytes.length))] - 1;
+    }
+
+    /**
+     * Returns the name with the given id.
+     *
+     * @param id The id of the name.
+     * @return The name with that id.
+     * @throws IndexOutOfBoundsException If no name has that id.
+     */
+    public String name(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("No node has id " + id + ".");
+
+        /* Build the String the first time it's asked for. */
+        if (names[id] == null)
+            names[id] = new String(pool, offsets[id], offsets[id + 1] - offsets[id],
+                                   StandardCharsets.UTF_8);
+        return names[id];
+    }
+
+    /**
+     * Returns the number of names in the dictionary.
+     *
+     * @return The number of names in the dictionary.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Hashes the bytes buf[off, off + len).
+     */
+    private static int hash(ByteBuffer buf, int off, int len) {
+        int hash = 0;
+        for (int i = 0; i < len; ++i)
+            hash = 31 * hash + buf.get(off + i);
+        return hash;
+    }
+
+    /**
+     * Returns the slot holding the given name, or the empty slot where it
+     * would be inserted if it isn't present.
+     */
+    private int find(ByteBuffer buf, int off, int len, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0 || (hashes[entry - 1] == hash && matches(entry - 1, buf, off, len)))
+                return slot;
+        }
+    }
+
+    private boolean matches(int id, ByteBuffer buf, int off, int len) {
+        int start = offsets[id];
+        if (offsets[id + 1] - start != len) return false;
+        for (int i = 0; i < len; ++i)
+            if (pool[start + i] != buf.get(off + i))
+                return false;
+        return true;
+    }
+
+    private int add(ByteBuffer buf, int off, int len, int hash) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            offsets = Arrays.copyOf(offsets, hashes.length + 1);
+            names = Arrays.copyOf(names, hashes.length);
+        }
+        int start = offsets[size];
+        if (start + len > pool.length)
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, start + len));
+        for (int i = 0; i < len; ++i)
+            pool[start + i] = buf.get(off + i);
+        offsets[size + 1] = start + len;
+        hashes[size] = hash;
+        return size++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; ++id) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    /* Spreads the bits of a hash so that names differing only in their last
+     * character don't land in adjacent slots.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
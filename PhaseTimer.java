@@ -0,0 +1,135 @@
+/*****************************************************************************
+ * File: PhaseTimer.java
+ *
+ * Splits the time taken by a max-flow run into the stages it passes through,
+ * so that it is clear which stage is worth attacking on which input.  The
+ * stages are:
+ *
+ *   PARSE      - Reading an input file into a FlowGraph.
+ *   BUILD      - Copying a graph into the structure an engine works on, such
+ *                as a FlowNetwork or a SimpleGraph's arrays.
+ *   RESIDUAL   - Constructing the residual graph.
+ *   SOLVE      - The algorithm proper.
+ *   WRITE_BACK - Copying the flow found back into the caller's structure.
+ *
+ * Both wall-clock time and the CPU time of the current thread are recorded
+ * for each stage.  Each thread has its own timer, fetched with current().
+ * Code marks the start of a stage with enter(), which charges the time since
+ * the last mark to whichever stage was running and returns it, and marks the
+ * end by passing that stage back to exit().  Stages therefore nest: when
+ * PreflowPush is given a SimpleGraph, copying the graph's edges out is
+ * charged to BUILD, the CsrResidualGraph built from them is charged to
+ * RESIDUAL, and the rest of the copy resumes being charged to BUILD on
+ * return.  Time spent outside any stage isn't charged at all.
+ *
+ * Marks are only made a handful of times per run, never in an inner loop, so
+ * the timer can be left on.
+ */
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*; // For Arrays
+
+public final class PhaseTimer {
+    /**
+     * The stages of a run, as described above.
+     */
+    public enum Phase {
+        PARSE, BUILD, RESIDUAL, SOLVE, WRITE_BACK
+    }
+
+    private static final ThreadLocal<PhaseTimer> CURRENT = ThreadLocal.withInitial(PhaseTimer::new);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    /* The time charged to each stage so far, indexed by ordinal. */
+    private final long[] wallNanos = new long[Phase.values().length];
+    private final long[] cpuNanos = new long[Phase.values().length];
+
+    /* The stage now running, if any, and when it was last charged. */
+    private Phase running;
+    private long wallMark;
+    private long cpuMark;
+
+    /**
+     * Returns the timer for the calling thread.
+     *
+     * @return The calling thread's timer.
+     */
+    public static PhaseTimer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts charging time to the given stage.
+     *
+     * @param phase The stage that is starting.
+     * @return The stage that was running before, or null if none was; this
+     *         should be passed to exit() when the new stage ends.
+     */
+    public Phase enter(Phase phase) {
+        Phase previous = running;
+        charge();
+        running = phase;
+        return previous;
+    }
+
+    /**
+     * Ends the current stage, resuming the stage that was running when it
+     * was entered.
+     *
+     * @param previous The stage returned by the matching call to enter().
+     */
+    public void exit(Phase previous) {
+        charge();
+        running = previous;
+    }
+
+    /**
+     * Clears all recorded times.  Any stage that is running keeps running,
+     * and is charged from this point on.
+     */
+    public void reset() {
+        Arrays.fill(wallNanos, 0);
+        Arrays.fill(cpuNanos, 0);
+        wallMark = System.nanoTime();
+        cpuMark = cpuTime();
+    }
+
+    /**
+     * Returns the wall-clock time charged to the given stage.
+     *
+     * @param phase The stage to query.
+     * @return The time charged to it, in nanoseconds.
+     */
+    public long wallNanos(Phase phase) {
+        return wallNanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the CPU time charged to the given stage, or zero if the JVM
+     * cannot measure per-thread CPU time.
+     *
+     * @param phase The stage to query.
+     * @return The CPU time charged to it, in nanoseconds.
+     */
+    public long cpuNanos(Phase phase) {
+        return cpuNanos[phase.ordinal()];
+    }
+
+    /* Charges the time since the last mark to the running stage. */
+    private void charge() {
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        if (running != null) {
+            wallNanos[running.ordinal()] += wall - wallMark;
+            cpuNanos[running.ordinal()] += cpu - cpuMark;
+        }
+        wallMark = wall;
+        cpuMark = cpu;
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+}
@@ -1,8 +1,5 @@
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 
 /**
  * The PreflowPush class simulates the Preflow-Push algorithm, which
@@ -13,53 +10,227 @@ import java.util.Map;
  */
 public class PreflowPush {
 	
-	private Map<String, Integer> vertices;
-	private ArrayList<Vertex>[] excess_heights;
-	private List<ArrayList<Edge>> residual_edges;
-	private List<Integer> current_pointers;
-	private SimpleGraph network;
-	private int max_height;
-	private Vertex sink_node;
-	private Vertex source_node;
+	//How much relabeling work may be done between global relabels, as a
+	//multiple of the number of vertices (plus one pass over the edges).
+	private static final int GLOBAL_RELABEL_FREQUENCY = 6;
+	//The fixed cost charged for each relabel, on top of the arcs it scans.
+	private static final int RELABEL_WORK = 12;
+	
+	//The graph the algorithm works on.  Vertices are identified by their
+	//dense ids, and flow is pushed by updating the residual capacities of
+	//the arcs, so nothing on the hot path touches an object or a cast.
+	private CsrResidualGraph residual;
+	private int source_node;
+	private int sink_node;
 	private boolean gap_relabel;
+	private boolean global_relabel;
+	private int num_vertices;
+	
+	//When the algorithm was given a SimpleGraph, its edges in the order
+	//the residual graph numbers them, so the flow can be copied back.
+	private Edge[] network_edges;
+	
+	//Per-vertex state, indexed by vertex id.
+	private int[] excess;
+	private int[] height;
+	private int[] current_arc;
+	
+	//Every vertex other than the source and sink is kept in exactly one
+	//doubly-linked list: the active list for its height if it has positive
+	//excess, and the inactive list for its height otherwise.  The links are
+	//stored intrusively in arrays indexed by vertex id, so inserting or
+	//removing a vertex is O(1) and allocates nothing.  -1 marks the end of
+	//a list.
+	private int[] active_heads;
+	private int[] inactive_heads;
+	private int[] next_in_bucket;
+	private int[] prev_in_bucket;
+	private int[] height_count;
+	private int max_active;
+	//The greatest height below n held by any vertex.
+	private int max_label;
+	
+	//Scratch space for the breadth-first searches of a global relabel.
+	private int[] queue;
+	
+	//Relabeling work done since the last global relabel, and the amount
+	//that triggers the next one.
+	private long work_since_relabel;
+	private long global_relabel_threshold;
+	
+	//Counters describing the work done by the last run.  They are also
+	//added to the thread's SolverStats when the run finishes.
+	private long saturating_pushes;
+	private long nonsaturating_pushes;
+	private long arcs_scanned;
+	private long relabel_count;
+	private long gap_count;
+	private long gap_vertices;
+	private long gap_levels;
+	private long global_relabel_count;
+	private long global_relabel_levels;
 	
 	/**
-	 * Default PreflowPush constructor.
+	 * Default PreflowPush constructor.  The graph is copied into a residual
+	 * graph for the algorithm to work on, and the flow that is found is
+	 * written back to the EdgeData of its edges when computeMaxFlow returns.
+	 * The vertices must be the ones G assigned ids to when they were
+	 * inserted.
 	 * 
 	 * @param G An input network graph.
 	 * @param start The source node of the flow network.
 	 * @param end The sink node of the flow network.
 	 */
-	@SuppressWarnings("unchecked")
 	public PreflowPush(SimpleGraph G, Vertex start, Vertex end) {
-		vertices = new HashMap<String, Integer>();
-		excess_heights = new ArrayList[((G.numVertices() + 2))];
-		residual_edges = new ArrayList<ArrayList<Edge>>(G.numVertices());
-		current_pointers = new ArrayList<Integer>(G.numVertices());
-		network = G;
-		max_height = 0;
-		sink_node = end;
+		PhaseTimer timer = PhaseTimer.current();
+		PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.BUILD);
+		int num_edges = G.numEdges();
+		network_edges = new Edge[num_edges];
+		int[] tails = new int[num_edges];
+		int[] heads = new int[num_edges];
+		int[] capacities = new int[num_edges];
+		int i = 0;
+		for(Iterator<?> itr = G.edges(); itr.hasNext(); i++) {
+			Edge e = (Edge) itr.next();
+			network_edges[i] = e;
+			tails[i] = e.getFirstEndpoint().getId();
+			heads[i] = e.getSecondEndpoint().getId();
+			capacities[i] = ((EdgeData) e.getData()).getCapacity();
+		}
+		setUp(new CsrResidualGraph(G.numVertices(), num_edges, tails, heads, capacities),
+				start.getId(), end.getId());
+		timer.exit(outer);
+	}
+	
+	/**
+	 * Creates a PreflowPush instance that works directly on the given
+	 * residual graph.  Any flow already in the graph is discarded by
+	 * initialize, and the graph holds a maximum flow once computeMaxFlow
+	 * returns.
+	 * 
+	 * @param G The residual graph to work on.
+	 * @param start The id of the source node of the flow network.
+	 * @param end The id of the sink node of the flow network.
+	 */
+	public PreflowPush(CsrResidualGraph G, int start, int end) {
+		setUp(G, start, end);
+	}
+	
+	/**
+	 * Creates a PreflowPush instance over the given graph.
+	 * 
+	 * @param G An input network graph.
+	 * @param start The id of the source node of the flow network.
+	 * @param end The id of the sink node of the flow network.
+	 * @return A PreflowPush instance for the graph.
+	 */
+	public static PreflowPush forGraph(FlowGraph G, int start, int end) {
+		return new PreflowPush(new CsrResidualGraph(G), start, end);
+	}
+	
+	/**
+	 * Computes a maximum flow in the given residual graph, discarding any
+	 * flow already in it, with both heuristics enabled.
+	 * 
+	 * @param G The residual graph to work on.
+	 * @param start The id of the source node of the flow network.
+	 * @param end The id of the sink node of the flow network.
+	 * @return The maximum flow from start to end.
+	 */
+	public static int findMaxFlow(CsrResidualGraph G, int start, int end) {
+		PreflowPush model = new PreflowPush(G, start, end);
+		model.initialize();
+		return model.computeMaxFlow();
+	}
+	
+	private void setUp(CsrResidualGraph G, int start, int end) {
+		residual = G;
+		num_vertices = G.numNodes();
 		source_node = start;
+		sink_node = end;
+		gap_relabel = true;
+		global_relabel = true;
+		excess = new int[num_vertices];
+		height = new int[num_vertices];
+		current_arc = new int[num_vertices];
+		//Heights never exceed 2n - 1.
+		active_heads = new int[2 * num_vertices];
+		inactive_heads = new int[2 * num_vertices];
+		height_count = new int[2 * num_vertices];
+		next_in_bucket = new int[num_vertices];
+		prev_in_bucket = new int[num_vertices];
+		queue = new int[num_vertices];
+		max_active = -1;
+	}
+	
+	/**
+	 * Enables or disables the gap heuristic.  When a relabel empties some
+	 * height h below n, no vertex above h can reach the sink any more, so
+	 * all of them are lifted straight to height n.
+	 * 
+	 * @param enabled Whether to apply the gap heuristic.
+	 */
+	public void setGapRelabel(boolean enabled) {
+		gap_relabel = enabled;
+	}
+	
+	/**
+	 * Enables or disables periodic global relabeling.  A global relabel sets
+	 * every height to the exact residual distance to the sink (or, for
+	 * vertices that cannot reach the sink, n plus the distance to the
+	 * source), and is run once up front and then whenever enough relabeling
+	 * work has been done since the last one.
+	 * 
+	 * @param enabled Whether to apply global relabeling.
+	 */
+	public void setGlobalRelabel(boolean enabled) {
+		global_relabel = enabled;
 	}
 	
 	/**
 	 * Conducts the Preflow-Push algorithm and computes the maximum flow
-	 * of a network graph.
+	 * of a network graph.  Vertices are always discharged highest label
+	 * first: the active vertex with the greatest height is taken from the
+	 * front of its bucket and pushes or relabels until its excess is gone.
 	 * 
 	 * @return The maximum flow of the input network graph.
 	 */
 	public int computeMaxFlow() {
-        Vertex excess_vertex;
-        //Vertices still exist with excess flow.
-        while(excessVertices()) {
-        	//Process the first vertex with excess flow at the current maximum height.
-        	excess_vertex = findNextVertex();
-        	boolean canPush = push(excess_vertex);
-        	if(!canPush) {
-        		relabel(excess_vertex);
-        	}
-        }
-		return ((VertexData) sink_node.getData()).getExcessFlow(); //The maximum flow.
+		if(source_node == sink_node) {
+			return 0; //The max flow from a node to itself is zero.
+		}
+		PhaseTimer timer = PhaseTimer.current();
+		PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.SOLVE);
+		if(global_relabel) {
+			globalRelabel();
+		}
+		while(max_active >= 0) {
+			if(global_relabel && work_since_relabel > global_relabel_threshold) {
+				globalRelabel();
+				continue;
+			}
+			int v = active_heads[max_active];
+			if(v < 0) {
+				//No active vertices left at this height, so look one lower.
+				max_active--;
+				continue;
+			}
+			remove(active_heads, v, max_active);
+			discharge(v);
+		}
+		if(network_edges != null) {
+			timer.enter(PhaseTimer.Phase.WRITE_BACK);
+			copyFlowToNetwork();
+		}
+		timer.exit(outer);
+		SolverStats stats = SolverStats.current();
+		stats.saturatingPushes += saturating_pushes;
+		stats.nonSaturatingPushes += nonsaturating_pushes;
+		stats.arcsScanned += arcs_scanned;
+		stats.relabels += relabel_count;
+		stats.gapRelabels += gap_count;
+		stats.globalRelabels += global_relabel_count;
+		return excess[sink_node]; //The maximum flow.
 	}
 	
 	/**
@@ -67,261 +238,392 @@ public class PreflowPush {
 	 * in the operation of this algorithm.
 	 */
 	public void initialize() {
-		Vertex v;
-		Edge source_edge;
-		String name;
-		VertexData data;
-    	EdgeData info;
-		Iterator itr;
-		Iterator s_v;
-		String source_name = (String) source_node.getName();
-		excess_heights[0] = new ArrayList<Vertex>();
-		int index = 0;
-        for (itr = network.vertices(); itr.hasNext();){
-        	v = (Vertex) itr.next();
-        	name = (String) v.getName();
-        	//Give each vertex a list to hold its residual edges.
-        	residual_edges.add(new ArrayList<Edge>());
-        	//Assign an integer id to each vertex.
-        	vertices.put(name, index);
-        	//Set the vertex to initially point to its first residual edge.
-        	current_pointers.add(0);
-        	//Assign a height of n to the source vertex.
-        	if(name.equals(source_name)) {
-        		data = (VertexData) v.getData();
-        		data.setPreflowHeight(network.numVertices());
-        		v.setData(data);
-        		//For each edge leaving the source, set its flow value to the edge capacity.
-        		for(s_v = network.incidentEdges(v); s_v.hasNext();) {
-        			source_edge = (Edge) s_v.next();
-                	info = (EdgeData) source_edge.getData();
-                	try {
-						info.setFlow(info.getCapacity());
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
-                	source_edge.setData(info);
-        		} 	
-        	}
-        	index++;
-        }
-        ArrayList<Edge> residual_edge_list;
-        ArrayList<Vertex> vertex_by_height;
-        int count = 0;
-        for (itr = network.vertices(); itr.hasNext();) {
-        	int edge_flow;
-        	int flow_in = 0;
-        	int flow_out = 0;
-        	v = (Vertex) itr.next();
-        	name = (String) v.getName();
-        	residual_edge_list = residual_edges.get(vertices.get(name));
-        	//Obtains the values needed to calculate the excess flow at a vertex.
-        	//Also records each outgoing vertex edge in the residual edge list.
-        	for(s_v = network.incidentEdges(v); s_v.hasNext();) {
-        		source_edge = (Edge) s_v.next();
-        		edge_flow = ((EdgeData) source_edge.getData()).getFlow();
-        		if(name.equals(source_edge.getSecondEndpoint().getName().toString())) {
-            		flow_in += edge_flow;
-            		//Residual graph backward edge (v, w) exists.
-            		if(edge_flow > 0) {
-            			residual_edge_list.add(source_edge);
-            		}
-            	} else {
-            		flow_out += edge_flow;
-            		//Residual graph forward edge (v, w) exists.
-            		if(edge_flow < ((EdgeData) source_edge.getData()).getCapacity()) {
-            			residual_edge_list.add(source_edge);
-            		}
-            	}
-        	}
-        	residual_edges.set(vertices.get(name), residual_edge_list);
-        	data = (VertexData) v.getData();
-        	data.setExcessFlow(flow_in - flow_out);
-        	v.setData(data);
-        	//Add vertices with excess flow into the list that contains
-        	//vertices by height.  Only non-sink or non-source vertices with 
-        	//excess flow are in this list.
-        	if ((flow_in - flow_out) > 0 && !name.equals(sink_node.getName().toString()) && 
-        		!name.equals(source_node.getName().toString())) {
-        		int height = data.getPreflowHeight();
-        		vertex_by_height = excess_heights[height];
-        		vertex_by_height.add(v);
-        		excess_heights[height] = vertex_by_height;
-        	} 
-        }
+		PhaseTimer timer = PhaseTimer.current();
+		PhaseTimer.Phase outer = timer.enter(PhaseTimer.Phase.SOLVE);
+		residual.reset();
+		Arrays.fill(excess, 0);
+		Arrays.fill(height, 0);
+		for(int v = 0; v < num_vertices; v++) {
+			current_arc[v] = residual.firstArc(v);
+		}
+		//Assign a height of n to the source vertex and saturate each arc
+		//leaving it.
+		height[source_node] = num_vertices;
+		for(int arc = residual.firstArc(source_node); arc < residual.endArc(source_node); arc++) {
+			int amount = residual.residual(arc);
+			int w = residual.head(arc);
+			if(amount > 0 && w != source_node) {
+				residual.push(arc, amount);
+				excess[w] += amount;
+				excess[source_node] -= amount;
+			}
+		}
+		global_relabel_threshold = (long) GLOBAL_RELABEL_FREQUENCY * num_vertices + residual.numArcs() / 2;
+		work_since_relabel = 0;
+		saturating_pushes = 0;
+		nonsaturating_pushes = 0;
+		arcs_scanned = 0;
+		relabel_count = 0;
+		gap_count = 0;
+		gap_vertices = 0;
+		gap_levels = 0;
+		global_relabel_count = 0;
+		global_relabel_levels = 0;
+		rebuildBuckets();
+		timer.exit(outer);
 	}
 	
 	/**
-	 * Verifies that vertices with excess flow still exist.
+	 * Returns the number of pushes done by the last run.
 	 */
-	private boolean excessVertices() {
-		boolean moreVertices = false;
-		for(int i = 0; i < excess_heights.length; i++) {
-			if(excess_heights[i] != null) {
-				moreVertices = true;
-				break;
+	public long getPushCount() {
+		return saturating_pushes + nonsaturating_pushes;
+	}
+	
+	/**
+	 * Returns the number of pushes done by the last run that used up the
+	 * residual capacity of their arc.
+	 */
+	public long getSaturatingPushCount() {
+		return saturating_pushes;
+	}
+	
+	/**
+	 * Returns the number of pushes done by the last run that left residual
+	 * capacity on their arc, and so emptied the excess of their vertex.
+	 */
+	public long getNonSaturatingPushCount() {
+		return nonsaturating_pushes;
+	}
+	
+	/**
+	 * Returns the number of arcs examined by pushes, relabels and global
+	 * relabels during the last run.
+	 */
+	public long getArcsScanned() {
+		return arcs_scanned;
+	}
+	
+	/**
+	 * Returns the number of (local) relabels done by the last run.
+	 */
+	public long getRelabelCount() {
+		return relabel_count;
+	}
+	
+	/**
+	 * Returns the number of gaps found by the last run.
+	 */
+	public long getGapCount() {
+		return gap_count;
+	}
+	
+	/**
+	 * Returns the number of vertices lifted to height n by gaps.
+	 */
+	public long getGapVertices() {
+		return gap_vertices;
+	}
+	
+	/**
+	 * Returns the total number of height levels that gap lifts skipped.
+	 * Each skipped level would otherwise have cost at least one relabel.
+	 */
+	public long getGapLevels() {
+		return gap_levels;
+	}
+	
+	/**
+	 * Returns the number of global relabels done by the last run.
+	 */
+	public long getGlobalRelabelCount() {
+		return global_relabel_count;
+	}
+	
+	/**
+	 * Returns the total number of height levels that global relabels raised
+	 * vertices by.  Each level would otherwise have cost at least one relabel.
+	 */
+	public long getGlobalRelabelLevels() {
+		return global_relabel_levels;
+	}
+	
+	/**
+	 * Repeatedly pushes excess flow out of vertex v, relabeling it whenever
+	 * it has no admissible arcs left, until its excess is zero.  Vertex v
+	 * must not be in any bucket; it is put in its inactive bucket when done.
+	 */
+	private void discharge(int v) {
+		int end = residual.endArc(v);
+		while(excess[v] > 0) {
+			int arc = current_arc[v];
+			if(arc == end) {
+				relabel(v);
+				current_arc[v] = residual.firstArc(v);
+				continue;
+			}
+			arcs_scanned++;
+			if(!push(v, arc)) {
+				//The arc is not admissible, so advance to the next one.
+				current_arc[v]++;
 			}
 		}
-		return moreVertices; 
+		insert(inactive_heads, v, height[v]);
 	}
 	
 	/**
-	 * Pushes some of the excess flow at vertex v forwards or backwards to another
-	 * vertex.  Flow is only pushed to a vertex that is incident to an outgoing
-	 * residual graph edge of v.  
+	 * Pushes as much of the excess flow at vertex v as possible across the
+	 * given arc.  Flow is only pushed across a residual arc (v, w) when
+	 * height(v) = height(w) + 1.
+	 * 
+	 * @return Whether any flow was pushed.
 	 */
-	private boolean push(Vertex v) {
-		boolean canPush = false;
-		int v_id = vertices.get(v.getName().toString());
-		VertexData v_data = (VertexData) v.getData();
-		List<Edge> v_edges = residual_edges.get(v_id);
-		List<Edge> w_edges;
-		Vertex w = null;
-		VertexData w_data;
-		int w_id;
-		for(int i = current_pointers.get(v_id); i < v_edges.size(); i++) {
-			boolean forward_edge = false;
-			//Get an unprocessed residual edge incident to vertex v.
-			Edge e = v_edges.get(i);
-			EdgeData e_data = (EdgeData) e.getData();
-			Vertex temp1 = e.getFirstEndpoint();
-			Vertex temp2 = e.getSecondEndpoint();
-			if(vertices.get(temp1.getName().toString()) == v_id) {
-				w = temp2; //Part of forward edge.
-				forward_edge = true;
-			} else {
-				w = temp1; //Part of backward edge.
+	private boolean push(int v, int arc) {
+		int available = residual.residual(arc);
+		int w = residual.head(arc);
+		if(available == 0 || height[v] != height[w] + 1) {
+			return false;
+		}
+		int amount = Math.min(excess[v], available);
+		residual.push(arc, amount);
+		excess[v] -= amount;
+		int w_excess = excess[w];
+		excess[w] = w_excess + amount;
+		if(amount == available) {
+			saturating_pushes++;
+		} else {
+			nonsaturating_pushes++;
+		}
+		//Vertex w has just acquired excess flow, so it becomes active.
+		if(w_excess == 0 && isInterior(w)) {
+			remove(inactive_heads, w, height[w]);
+			insert(active_heads, w, height[w]);
+		}
+		return true;
+	}
+	
+	/**
+	 * Increases the height of vertex v to one more than the lowest neighbor
+	 * it has a residual arc to.  This should only occur when v has no
+	 * admissible arcs left.  If v was the last vertex at its old height,
+	 * the gap heuristic lifts v and everything above the gap to height n.
+	 */
+	private void relabel(int v) {
+		int old_height = height[v];
+		int min_neighbor_height = 2 * num_vertices - 2;
+		int first = residual.firstArc(v);
+		int end = residual.endArc(v);
+		for(int arc = first; arc < end; arc++) {
+			if(residual.residual(arc) > 0) {
+				min_neighbor_height = Math.min(min_neighbor_height, height[residual.head(arc)]);
 			}
-			w_data = (VertexData) w.getData();
-			//Requirement of Steepness condition.
-			if(v_data.getPreflowHeight() > w_data.getPreflowHeight()) {
-				canPush = true;
-				w_id = vertices.get(w.getName().toString());
-				w_edges = residual_edges.get(w_id);
-				int min;
-				if(forward_edge) {
-					//The amount of flow that will be pushed "forward" in the network.
-					min = Math.min(v_data.getExcessFlow(), e_data.getAvailable());
-					if(e_data.getFlow() == 0) {
-						w_edges.add(e);
-					}
-				} else {
-					//The amount of (negated) flow that will be pushed "backward" in the network.
-					min = ((Math.min(v_data.getExcessFlow(), e_data.getFlow()))) * (-1);
-					if(e_data.getAvailable() == 0) {
-						w_edges.add(e);
-					}
-				}
-				try {
-					e_data.setFlow(e_data.getFlow() + min);
-					if((forward_edge && (e_data.getAvailable() == 0)) ||
-					   (!forward_edge && (e_data.getFlow() == 0))) {
-						v_edges.remove(i);
-						residual_edges.set(v_id, (ArrayList<Edge>) v_edges);
-					}
-				} catch (Exception e1) {
-					e1.printStackTrace();
-				}
-				residual_edges.set(w_id, (ArrayList<Edge>) w_edges);
-				//Decrement excess flow at vertex v and increment excess at vertex w. 
-				v_data.setExcessFlow(v_data.getExcessFlow() - Math.abs(min));
-				w_data.setExcessFlow(w_data.getExcessFlow() + Math.abs(min));
-				//Remove vertex v from the list of vertices with excess flow if the
-				//push operation depleted its excess flow.
-				if(v_data.getExcessFlow() <= 0) {
-					ArrayList<Vertex> nodes = excess_heights[max_height];
-					nodes.remove(0);
-					excess_heights[max_height] =  nodes;
-					if(excess_heights[max_height].size() == 0 && max_height != 0) {
-						max_height = max_height - 1;
-						excess_heights[max_height + 1] = null;
-					}
-				}
-				int w_flow = w_data.getExcessFlow();
-				String w_name = w.getName().toString();
-				//Vertex w has not acquired excess flow and should be inserted into the height list if
-				//it is not the sink vertex.
-				if(w_flow > 0 && ((w_flow - Math.abs(min)) <= 0) && (!w_name.equals(sink_node.getName().toString())) &&
-				   (!w_name.equals(source_node.getName().toString()))) {
-					ArrayList<Vertex> height = excess_heights[w_data.getPreflowHeight()];
-					if(height == null) {
-						height = new ArrayList<Vertex>();
-						height.add(w);
-						excess_heights[w_data.getPreflowHeight()] = height;
-					} else {
-						excess_heights[w_data.getPreflowHeight()].add(w);
-					}
-				}
-				//Current edge was saturated, so advance pointer to next edge incident to v.
-				v.setData(v_data);
-				e.setData(e_data);
-				break;
+		}
+		int new_height = min_neighbor_height + 1;
+		relabel_count++;
+		arcs_scanned += end - first;
+		work_since_relabel += RELABEL_WORK + end - first;
+		
+		height_count[old_height]--;
+		if(gap_relabel && old_height < num_vertices && height_count[old_height] == 0) {
+			//Nothing is left at old_height, so nothing above it can reach
+			//the sink.  Lift v and everything above the gap to height n.
+			gap(old_height);
+			if(new_height < num_vertices) {
+				gap_levels += num_vertices - new_height;
+				new_height = num_vertices;
 			}
-			current_pointers.set(v_id, current_pointers.get(v_id) + 1);
 		}
-		return canPush;
+		height[v] = new_height;
+		height_count[new_height]++;
+		if(new_height < num_vertices && new_height > max_label) {
+			max_label = new_height;
+		}
 	}
 	
 	/**
-	 * Increases the height of vertex v.  This height change should only occur when
-	 * all of v's incident residual edges have been saturated or height(w) >= height(v) for all
-	 * vertices w that are incident to a residual graph edge of v.   
+	 * Lifts every vertex with a height strictly between the given height
+	 * and n to height n.
 	 */
-	private void relabel(Vertex v) {
-		int id = vertices.get(v.getName().toString());
-		VertexData data = (VertexData) v.getData();
-		int original_height = data.getPreflowHeight();
-		int min_neighbor_height = network.numVertices();
-		int neighbor_height;
-		String name = v.getName().toString();
-		//Finds the neighboring vertex with the smallest height among the set of neighbors. 
-		for(Edge neighbor : residual_edges.get(id)) {
-			if(neighbor.getFirstEndpoint().getName().toString().equals(name)) {
-				neighbor_height = ((VertexData) neighbor.getSecondEndpoint().getData()).getPreflowHeight();
-			} else {
-				neighbor_height = ((VertexData) neighbor.getFirstEndpoint().getData()).getPreflowHeight();
+	private void gap(int gap_height) {
+		gap_count++;
+		for(int h = gap_height + 1; h <= max_label; h++) {
+			gap_vertices += height_count[h];
+			gap_levels += (long) height_count[h] * (num_vertices - h);
+			liftBucket(active_heads, h);
+			liftBucket(inactive_heads, h);
+			height_count[num_vertices] += height_count[h];
+			height_count[h] = 0;
+		}
+		max_label = gap_height - 1;
+	}
+	
+	/**
+	 * Moves every vertex in the given bucket to the same kind of bucket at
+	 * height n.
+	 */
+	private void liftBucket(int[] heads, int bucket) {
+		int v = heads[bucket];
+		while(v >= 0) {
+			int next = next_in_bucket[v];
+			height[v] = num_vertices;
+			insert(heads, v, num_vertices);
+			v = next;
+		}
+		heads[bucket] = -1;
+	}
+	
+	/**
+	 * Recomputes every height exactly.  A breadth-first search backwards
+	 * from the sink sets each vertex that can reach the sink to its residual
+	 * distance from it; a second search backwards from the source sets each
+	 * remaining vertex to n plus its residual distance from the source.
+	 */
+	private void globalRelabel() {
+		FlowEvents.GlobalRelabel event = new FlowEvents.GlobalRelabel();
+		event.begin();
+		long levels = global_relabel_levels;
+		long scanned = arcs_scanned;
+
+		//The old heights are parked in current_arc, which is reset below.
+		int[] old_height = current_arc;
+		System.arraycopy(height, 0, old_height, 0, num_vertices);
+		Arrays.fill(height, -1);
+		height[source_node] = num_vertices;
+		reverseSearch(sink_node, 0);
+		reverseSearch(source_node, num_vertices);
+		for(int v = 0; v < num_vertices; v++) {
+			if(height[v] < 0) {
+				//Cut off from both the source and the sink; such a vertex
+				//can never hold excess, so its height doesn't matter.
+				height[v] = 2 * num_vertices - 1;
 			}
-			if((neighbor_height >= original_height) && neighbor_height < min_neighbor_height) {
-				min_neighbor_height = neighbor_height;
+			if(height[v] > old_height[v]) {
+				global_relabel_levels += height[v] - old_height[v];
 			}
+			current_arc[v] = residual.firstArc(v);
 		}
-		//Set the height of v to one level greater than its closest neighbor (by height).
-		data.setPreflowHeight(min_neighbor_height + 1);
-		max_height = min_neighbor_height + 1;
-		v.setData(data);
-		current_pointers.set(id, 0);
-		ArrayList<Vertex> new_excess_vertices = new ArrayList<Vertex>();
-		new_excess_vertices.add(v);
-		if(excess_heights[max_height] == null) {
-			excess_heights[max_height] = new_excess_vertices;
+		global_relabel_count++;
+		work_since_relabel = 0;
+		rebuildBuckets();
+
+		if(event.shouldCommit()) {
+			event.flow = excess[sink_node];
+			event.arcs = residual.numArcs();
+			event.levels = global_relabel_levels - levels;
+			event.arcsScanned = arcs_scanned - scanned;
+			event.commit();
 		}
-		//Removes v from its old height level list.
-		ArrayList<Vertex> old_height = excess_heights[original_height];
-		for(int i = 0; i < old_height.size(); i++) {
-			if(old_height.get(i).getName().toString().equals(v.getName().toString())) {
-				old_height.remove(i);
-				if(old_height.size() == 0) {
-					excess_heights[original_height] = null;
-				} else {
-					excess_heights[original_height] = old_height;
+	}
+	
+	/**
+	 * Runs a breadth-first search backwards along residual arcs from the
+	 * given root, giving the root the height base and each unlabeled vertex
+	 * found the height base plus its distance.
+	 */
+	private void reverseSearch(int root, int base) {
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = root;
+		height[root] = base;
+		while(head < tail) {
+			int w = queue[head++];
+			int next_height = height[w] + 1;
+			arcs_scanned += residual.endArc(w) - residual.firstArc(w);
+			for(int arc = residual.firstArc(w); arc < residual.endArc(w); arc++) {
+				//The arc w -> u has a reverse u -> w; if that has capacity
+				//left, u can reach w.
+				int u = residual.head(arc);
+				if(height[u] < 0 && residual.residual(residual.reverse(arc)) > 0) {
+					height[u] = next_height;
+					queue[tail++] = u;
 				}
 			}
 		}
 	}
 	
 	/**
-	 * Finds the next excess-flow vertex to process.  
+	 * Places every vertex other than the source and sink in the bucket for
+	 * its current height, and recounts the vertices at each height,
+	 * including the sink.
 	 */
-	private Vertex findNextVertex() {
-		if(excess_heights[max_height] == null) {
-			for(int i = max_height - 1; i >= 0; i--) {
-				if(excess_heights[i] != null) {
-					max_height = i;
-					break;
-				}
+	private void rebuildBuckets() {
+		Arrays.fill(active_heads, -1);
+		Arrays.fill(inactive_heads, -1);
+		Arrays.fill(height_count, 0);
+		max_active = -1;
+		max_label = 0;
+		//The sink sits at height 0 and is counted there, so that height 0
+		//can never look empty to the gap heuristic.  The source stays at n,
+		//where gaps are never looked for.
+		height_count[height[sink_node]]++;
+		for(int v = 0; v < num_vertices; v++) {
+			if(!isInterior(v)) {
+				continue;
+			}
+			height_count[height[v]]++;
+			if(height[v] < num_vertices && height[v] > max_label) {
+				max_label = height[v];
+			}
+			if(excess[v] > 0) {
+				insert(active_heads, v, height[v]);
+			} else {
+				insert(inactive_heads, v, height[v]);
+			}
+		}
+	}
+	
+	/**
+	 * Stores the flow in the residual graph on the EdgeData of the
+	 * SimpleGraph the algorithm was given.
+	 */
+	private void copyFlowToNetwork() {
+		for(int i = 0; i < network_edges.length; i++) {
+			try {
+				((EdgeData) network_edges[i].getData()).setFlow(residual.flow(i));
+			} catch (Exception e) {
+				e.printStackTrace();
 			}
 		}
-		return (Vertex) excess_heights[max_height].get(0); 
+	}
+	
+	/**
+	 * Returns whether the given vertex is neither the source nor the sink.
+	 */
+	private boolean isInterior(int v) {
+		return v != source_node && v != sink_node;
+	}
+	
+	/**
+	 * Adds a vertex to the front of the given kind of bucket at the given
+	 * height.
+	 */
+	private void insert(int[] heads, int v, int bucket) {
+		int head = heads[bucket];
+		next_in_bucket[v] = head;
+		prev_in_bucket[v] = -1;
+		if(head >= 0) {
+			prev_in_bucket[head] = v;
+		}
+		heads[bucket] = v;
+		if(heads == active_heads && bucket > max_active) {
+			max_active = bucket;
+		}
+	}
+	
+	/**
+	 * Removes a vertex from the given kind of bucket at the given height.
+	 */
+	private void remove(int[] heads, int v, int bucket) {
+		int next = next_in_bucket[v];
+		int prev = prev_in_bucket[v];
+		if(prev >= 0) {
+			next_in_bucket[prev] = next;
+		} else {
+			heads[bucket] = next;
+		}
+		if(next >= 0) {
+			prev_in_bucket[next] = prev;
+		}
 	}
 	
 	public static void main(String[] args) {
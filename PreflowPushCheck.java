@@ -0,0 +1,145 @@
+/*****************************************************************************
+ * File: PreflowPushCheck.java
+ *
+ * A consistency check for the heuristics of PreflowPush.  The gap heuristic
+ * and global relabeling only change how quickly push-relabel converges, never
+ * the flow it converges to, so every combination of the two must find the
+ * same flow.  For each graph the check computes the flow with Dinic's
+ * algorithm and with Edmonds-Karp, which must agree, and then with
+ * PreflowPush under all four settings of the two toggles, reporting any run
+ * that differs.
+ *
+ * Usage:
+ *
+ *     java PreflowPushCheck [-random N] [-seed N] [path ...]
+ *
+ * Each path may name a graph file or a directory, as for Benchmark; with no
+ * paths, the same four families are checked.  The -random option also checks
+ * N small random graphs (1000 by default), since small graphs with a dense
+ * mix of capacities are the ones most likely to empty a height bucket at an
+ * awkward moment.  The same seed always produces the same graphs.  The exit
+ * status is 1 if any run disagreed.
+ */
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*; // For ArrayList, Arrays, List, NoSuchElementException, Random
+
+public final class PreflowPushCheck {
+    static final int DEFAULT_RANDOM_GRAPHS = 1000;
+
+    /* The sizes of the random graphs checked. */
+    private static final int MAX_RANDOM_NODES = 40;
+    private static final int MAX_RANDOM_CAPACITY = 100;
+
+    public static void main(String[] args) throws IOException {
+        int randomGraphs = DEFAULT_RANDOM_GRAPHS;
+        long seed = 1;
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-random") && i + 1 < args.length) {
+                randomGraphs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                System.err.println("usage: java PreflowPushCheck [-random N] [-seed N] [path ...]");
+                System.exit(1);
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.isEmpty())
+            paths = Arrays.asList(Benchmark.DEFAULT_PATHS);
+
+        int checked = 0;
+        int failed = 0;
+        for (Path file: Benchmark.findGraphs(paths)) {
+            FlowGraph g = FlowGraph.load(file.toString());
+            int s, t;
+            try {
+                s = g.id("s");
+                t = g.id("t");
+            } catch (NoSuchElementException e) {
+                System.out.printf("%s skipped: %s%n", file, e.getMessage());
+                continue;
+            }
+            ++checked;
+            if (!check(file.toString(), g, s, t))
+                ++failed;
+        }
+
+        Random random = new Random(seed);
+        for (int i = 0; i < randomGraphs; ++i) {
+            ++checked;
+            if (!check("random graph " + i + " (seed " + seed + ")", randomGraph(random), 0, 1))
+                ++failed;
+        }
+
+        System.out.printf("%d graphs checked, %d failed%n", checked, failed);
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Checks that every combination of the PreflowPush heuristics finds the
+     * same flow in the given graph as Dinic's algorithm and Edmonds-Karp,
+     * printing a line for each run that doesn't.
+     *
+     * @param label The name of the graph, for the report.
+     * @param g The graph to check.
+     * @param s The id of the source node.
+     * @param t The id of the sink node.
+     * @return Whether every run agreed.
+     */
+    public static boolean check(String label, FlowGraph g, int s, int t) {
+        CsrResidualGraph residual = new CsrResidualGraph(g);
+        int expected = MaxFlowEngine.DINIC.solve(residual, s, t);
+        residual.reset();
+        int karp = MaxFlowEngine.EDMONDS_KARP.solve(residual, s, t);
+
+        boolean agreed = true;
+        if (karp != expected) {
+            System.out.printf("%s: Dinic found %d but Edmonds Karp found %d%n", label, expected, karp);
+            agreed = false;
+        }
+        for (int mask = 0; mask < 4; ++mask) {
+            boolean gap = (mask & 1) != 0;
+            boolean global = (mask & 2) != 0;
+
+            residual.reset();
+            PreflowPush model = new PreflowPush(residual, s, t);
+            model.setGapRelabel(gap);
+            model.setGlobalRelabel(global);
+            model.initialize();
+            int flow = model.computeMaxFlow();
+            if (flow != expected) {
+                System.out.printf("%s: Dinic found %d but Preflow Push (gap %s, global relabel %s) found %d%n",
+                                  label, expected, gap ? "on" : "off", global ? "on" : "off", flow);
+                agreed = false;
+            }
+        }
+        return agreed;
+    }
+
+    /**
+     * Generates a small random graph whose source is node 0, named "s", and
+     * whose sink is node 1, named "t".
+     *
+     * @param random The source of randomness.
+     * @return The graph.
+     */
+    static FlowGraph randomGraph(Random random) {
+        int n = 2 + random.nextInt(MAX_RANDOM_NODES - 1);
+        double density = random.nextDouble();
+
+        FlowGraph.Builder builder = new FlowGraph.Builder();
+        builder.node("s");
+        builder.node("t");
+        for (int v = 2; v < n; ++v)
+            builder.node(Integer.toString(v));
+        for (int u = 0; u < n; ++u)
+            for (int v = 0; v < n; ++v)
+                if (u != v && random.nextDouble() < density)
+                    builder.addEdge(u, v, 1 + random.nextInt(MAX_RANDOM_CAPACITY));
+        return builder.build();
+    }
+}
@@ -1,91 +1,308 @@
+/*****************************************************************************
+ * File: BuildGraph.java
+ *
+ * A generator for random flow networks.  Every unordered pair of nodes
+ * {a, b} with a < b is joined independently with probability dense / 100,
+ * and a joined pair gets a single capacity drawn uniformly from
+ * [minCapacity, maxCapacity].  Node 0 is the source and node vertices - 1
+ * leads into the sink, and the pairs are written out in row-major order:
+ *
+ *     row 0:            "s b c"  for every pair {0, b}
+ *     row x (interior): "x y c"  for every pair {x, y} with y != 0, so an
+ *                                interior pair is written in both directions
+ *     row vertices - 1: "a t c"  for every pair {a, vertices - 1} with a != 0
+ *
+ * Each line ends in "\r\n".
+ *
+ * Rather than filling in a vertices x vertices matrix, the generator
+ * samples the joined pairs directly.  Walking through the pairs in order,
+ * the gap to the next joined pair is geometrically distributed, so it can be
+ * drawn in one step instead of flipping a coin for every pair.  That takes
+ * O(vertices + m) time and memory for m joined pairs, which makes graphs
+ * with millions of nodes practical as long as they are sparse.  Each row
+ * needs the pairs that end at the row's node as well as those that start
+ * there, so the pairs are bucketed by their second node before anything is
+ * written.  The output is formatted into a large byte buffer and written
+ * through a FileChannel.
+ *
+ * The generator takes a seed, so a graph can be regenerated exactly.
+ */
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Random;
 
 public class BuildGraph {
-        
-        public static String generate(int v, int e, int min, int max, String filename) {
-                return graphBuilder(filename, ".", v, e, max, min);
+    /* The size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /* Room for the longest possible line: two ints, a capacity and "\r\n". */
+    private static final int MAX_LINE = 40;
+
+    public static String generate(int v, int e, int min, int max, String filename) {
+        return graphBuilder(filename, ".", v, e, max, min);
+    }
+
+    public static String generate(int v, double e, int min, int max, String filename, long seed) {
+        return graphBuilder(filename, ".", v, e, max, min, seed);
+    }
+
+    public static String generate(int v, int e, int min, int max, int run) {
+        return generate(v, e, min, max, run + File.separator + "ra_v" + v + "_e" + e + "_" + min + "-" + max + ".txt");
+    }
+
+    public BuildGraph() {
+
+    }
+
+    /**
+     * Generates a random graph with a randomly chosen seed.
+     *
+     * @see #graphBuilder(String, String, int, double, int, int, long)
+     */
+    public static String graphBuilder(String fileName, String directory, int vertices, int dense,
+                                      int maxCapacity, int minCapacity) {
+        return graphBuilder(fileName, directory, vertices, dense, maxCapacity, minCapacity,
+                            new Random().nextLong());
+    }
+
+    /**
+     * Generates a random graph and writes it to a file.
+     *
+     * @param fileName The name of the file to write.
+     * @param directory The directory to write it in, or "" for the current
+     *                  directory.
+     * @param vertices The number of nodes, including the source.
+     * @param dense The percentage chance that any given pair is joined,
+     *              which may be fractional for very sparse graphs.
+     * @param maxCapacity The largest capacity to give an edge.
+     * @param minCapacity The smallest capacity to give an edge.
+     * @param seed The seed for the random number generator.
+     * @return The name of the file written, or null if it couldn't be.
+     */
+    public static String graphBuilder(String fileName, String directory, int vertices, double dense,
+                                      int maxCapacity, int minCapacity, long seed) {
+        String dirName = directory;
+        if (dirName.equals(""))
+            dirName = ".";
+        File outputfile = new File(dirName, fileName);
+
+        try (FileChannel output = FileChannel.open(outputfile.toPath(), StandardOpenOption.WRITE,
+                                                   StandardOpenOption.CREATE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            Pairs pairs = samplePairs(new Random(seed), vertices, dense, minCapacity, maxCapacity);
+            writeRows(output, pairs, vertices);
+        } catch (IOException e) {
+            System.err.println("Error opening file" + e);
+            return null;
+        }
+        return fileName;
+    }
+
+    /* The joined pairs {first[i], second[i]} with first[i] < second[i], in
+     * row-major order, and the capacity of each.
+     */
+    private static final class Pairs {
+        int[] first = new int[16];
+        int[] second = new int[16];
+        int[] capacity = new int[16];
+        int size = 0;
+
+        void add(int a, int b, int c) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, 2 * size);
+                second = Arrays.copyOf(second, 2 * size);
+                capacity = Arrays.copyOf(capacity, 2 * size);
+            }
+            first[size] = a;
+            second[size] = b;
+            capacity[size] = c;
+            ++size;
+        }
+    }
+
+    /**
+     * Chooses the joined pairs by skipping over the pairs that aren't
+     * joined a geometrically distributed run at a time.
+     */
+    private static Pairs samplePairs(Random random, int vertices, double dense,
+                                     int minCapacity, int maxCapacity) {
+        Pairs pairs = new Pairs();
+        double p = Math.min(dense, 100) / 100.0;
+        if (p <= 0 || vertices < 2) return pairs;
+
+        /* The number of pairs skipped before the next joined one is
+         * floor(ln(U) / ln(1 - p)) for U uniform on (0, 1].  When every
+         * pair is joined, nothing is ever skipped.  log1p keeps ln(1 - p)
+         * from rounding to zero when p is tiny, and a skip reaching past
+         * the last pair ends the sampling before it can overflow.
+         */
+        double logMiss = Math.log1p(-p);
+        int a = 0;
+        int b = 0;
+        while (true) {
+            long left = (vertices - 1 - b) + (long) (vertices - 2 - a) * (vertices - 1 - a) / 2;
+            double skip = (p >= 1) ? 0 : Math.floor(Math.log1p(-random.nextDouble()) / logMiss);
+            if (skip >= left) return pairs;
+
+            /* Step to the pair that many places after the current one,
+             * moving down whole rows at a time.
+             */
+            long next = b + 1 + (long) skip;
+            while (next >= vertices) {
+                ++a;
+                if (a >= vertices - 1) return pairs;
+                next -= vertices - (a + 1);
+            }
+            b = (int) next;
+
+            /* A capacity of zero leaves the pair unjoined after all. */
+            int capacity = random.nextInt(maxCapacity - minCapacity + 1) + minCapacity;
+            if (capacity != 0)
+                pairs.add(a, b, capacity);
         }
-        public static String generate(int v, int e, int min, int max, int run) {
-                return generate(v, e, min, max, run + File.separator + "ra_v" + v + "_e" + e + "_" + min + "-" + max + ".txt");
+    }
+
+    /**
+     * Writes out every row of the graph.  Row x lists the pairs {y, x} with
+     * y < x in order of y, followed by the pairs {x, y} with y > x in order
+     * of y.  The first group is found by a stable counting sort of the pairs
+     * on their second node.
+     */
+    private static void writeRows(FileChannel output, Pairs pairs, int vertices) throws IOException {
+        /* Find where each node's pairs start in the row-major order, and
+         * bucket the pairs by their second node.
+         */
+        int[] rowStart = new int[vertices + 1];
+        int[] columnStart = new int[vertices + 1];
+        for (int i = 0; i < pairs.size; ++i) {
+            ++rowStart[pairs.first[i] + 1];
+            ++columnStart[pairs.second[i] + 1];
         }
-        public BuildGraph(){
-                
+        for (int x = 0; x < vertices; ++x) {
+            rowStart[x + 1] += rowStart[x];
+            columnStart[x + 1] += columnStart[x];
         }
-        
-        public static String graphBuilder(String fileName, String directory, int vertices, int dense,
-                        int maxCapacity, int minCapacity) {
-                Random random = new Random();
-                try {
-                        String dirName = directory;//
-                        if (dirName.equals(""))
-                                dirName = ".";
-
-                        File outputfile = new File(dirName, fileName);
-                        int[][] Graph = new int[vertices][vertices];
-                        int n, m;
-
-                        for (n = 0; n < vertices; n++)
-                                for (m = n + 1; m < vertices; m++) {
-                                        int randomInt = (random
-                                                        .nextInt((maxCapacity - minCapacity + 1)) + minCapacity);
-
-                                        int k = (int) (1000.0 * Math.random() / 10.0);
-                                        int b = (k < dense) ? 1 : 0;
-                                        if (b == 0)
-                                                Graph[n][m] = Graph[m][n] = b;
-                                        else
-                                                Graph[n][m] = Graph[m][n] = randomInt;
-                                }
-
-                        PrintWriter output = new PrintWriter(new FileWriter(outputfile));
-
-                        for (int x = 0; x < Graph.length; x++)
-                                if (x == 0)
-                                        for (int y = 0; y < Graph[x].length; y++) {
-                                                String value = String.valueOf(Graph[x][y]);
-                                                if (y != 0)
-                                                        if (value.equals("0") == false)
-                                                                output.print("s " + String.valueOf(y) + " "
-                                                                                + value + "\r\n");
-                                        }
-                                else if (x == Graph.length - 1)
-                                        for (int y = 0; y < Graph[x].length; y++) {
-                                                String value = String.valueOf(Graph[x][y]);
-                                                if (y != 0)
-                                                        if (value.equals("0") == false)
-                                                                output.print(String.valueOf(y) + " t " + value
-                                                                                + "\r\n");
-                                        }
-                                else
-                                        for (int y = 0; y < Graph[x].length; y++) {
-                                                String value = String.valueOf(Graph[x][y]);
-                                                if (y != 0)
-                                                        if (value.equals("0") == false)
-                                                                output.print(x + " " + String.valueOf(y) + " "
-                                                                                + value + "\r\n");
-                                        }
-
-                        output.close();
-                } catch (IOException e) {
-                        System.err.println("Error opening file" + e);
-                        return null;
+        int[] byColumn = new int[pairs.size];
+        int[] next = Arrays.copyOf(columnStart, vertices);
+        for (int i = 0; i < pairs.size; ++i)
+            byColumn[next[pairs.second[i]]++] = i;
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        int last = vertices - 1;
+        for (int x = 0; x < vertices; ++x) {
+            if (x == 0) {
+                for (int i = rowStart[0]; i < rowStart[1]; ++i) {
+                    room(output, buf);
+                    writeLine(buf, -1, pairs.second[i], pairs.capacity[i]);
+                }
+            } else if (x == last) {
+                for (int j = columnStart[x]; j < columnStart[x + 1]; ++j) {
+                    int i = byColumn[j];
+                    if (pairs.first[i] == 0) continue;
+                    room(output, buf);
+                    writeLine(buf, pairs.first[i], -2, pairs.capacity[i]);
                 }
-                //System.out.print("\nDone");
-                return fileName;
+            } else {
+                for (int j = columnStart[x]; j < columnStart[x + 1]; ++j) {
+                    int i = byColumn[j];
+                    if (pairs.first[i] == 0) continue;
+                    room(output, buf);
+                    writeLine(buf, x, pairs.first[i], pairs.capacity[i]);
+                }
+                for (int i = rowStart[x]; i < rowStart[x + 1]; ++i) {
+                    room(output, buf);
+                    writeLine(buf, x, pairs.second[i], pairs.capacity[i]);
+                }
+            }
+        }
+        flush(output, buf);
+    }
+
+    /* Flushes the buffer if it might not have room for another line. */
+    private static void room(FileChannel output, ByteBuffer buf) throws IOException {
+        if (buf.remaining() < MAX_LINE)
+            flush(output, buf);
+    }
+
+    private static void flush(FileChannel output, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            output.write(buf);
+        buf.clear();
+    }
+
+    /* Writes one line, where a node of -1 stands for s and -2 for t. */
+    private static void writeLine(ByteBuffer buf, int from, int to, int capacity) {
+        writeNode(buf, from);
+        buf.put((byte) ' ');
+        writeNode(buf, to);
+        buf.put((byte) ' ');
+        writeInt(buf, capacity);
+        buf.put((byte) '\r');
+        buf.put((byte) '\n');
+    }
+
+    private static void writeNode(ByteBuffer buf, int node) {
+        if (node == -1)
+            buf.put((byte) 's');
+        else if (node == -2)
+            buf.put((byte) 't');
+        else
+            writeInt(buf, node);
+    }
+
+    /* Writes the decimal digits of a non-negative int. */
+    private static void writeInt(ByteBuffer buf, int value) {
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10)
+            ++digits;
+        int end = buf.position() + digits;
+        for (int pos = end - 1; pos >= buf.position(); --pos) {
+            buf.put(pos, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buf.position(end);
+    }
+
+    /**
+     * With no arguments, regenerates the sample graphs.  Otherwise takes
+     *
+     *     [-seed N] vertices dense minCapacity maxCapacity file
+     *
+     * and writes a single graph.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            generate(100, 1000, 5, 100, "hhw");
+            generate(100, 1000, 80, 100, "hhld");
+            generate(100, 100, 5, 100, "hlw");
+            generate(100, 100, 80, 100, "hlld");
+            generate(10, 100, 5, 100, "lhw");
+            generate(10, 100, 80, 100, "lhld");
+            generate(10, 10, 5, 100, "llw");
+            generate(10, 10, 80, 100, "llld");
+            return;
+        }
+
+        int arg = 0;
+        long seed = new Random().nextLong();
+        if (args[0].equals("-seed") && args.length > 1) {
+            seed = Long.parseLong(args[1]);
+            arg = 2;
         }
-        
-        public static void main(String[] args){
-                generate(100, 1000, 5, 100, "hhw");
-                generate(100, 1000, 80, 100, "hhld");
-                generate(100, 100, 5, 100, "hlw");
-                generate(100, 100, 80, 100, "hlld");
-                generate(10, 100, 5, 100, "lhw");
-                generate(10, 100, 80, 100, "lhld");
-                generate(10, 10, 5, 100, "llw");
-                generate(10, 10, 80, 100, "llld");
+        if (args.length - arg != 5) {
+            System.err.println("Usage: java BuildGraph [-seed N] vertices dense minCapacity maxCapacity file");
+            System.exit(1);
         }
-}
\ No newline at end of file
+        int vertices = Integer.parseInt(args[arg]);
+        double dense = Double.parseDouble(args[arg + 1]);
+        int min = Integer.parseInt(args[arg + 2]);
+        int max = Integer.parseInt(args[arg + 3]);
+        if (generate(vertices, dense, min, max, args[arg + 4], seed) == null)
+            System.exit(1);
+    }
+}
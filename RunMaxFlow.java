@@ -1,59 +1,109 @@
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
 
+/**
+ * Runs every engine once on a single graph and prints how long each stage of
+ * each run took, in wall-clock and CPU milliseconds.  The stages are those of
+ * PhaseTimer: parsing the file, building an engine's working structure,
+ * constructing the residual graph, the solve proper, and writing the flow
+ * back.  Each engine is run cold, so for statistically sound numbers use
+ * Benchmark or CorpusRunner instead.
+ * 
+ * With -objects, the original object-based Ford-Fulkerson and capacity
+ * scaling engines, which build a FlowNetwork and copy the flow they find
+ * back into it, are run as well.
+ * 
+ * A graph in CompressedGraphFormat is never inflated for the engines: each
+ * one gets a residual graph decoded edge by edge straight from the file.
+ * 
+ * Usage: java RunMaxFlow path/to/input/graph [-objects]
+ */
 public class RunMaxFlow {
 	public static void main(String[] args) {
 
-	IntegralDirectedGraph g = new IntegralDirectedGraph();
-	SimpleGraph sg = new SimpleGraph();
-	
-	ReadCSV reader = new ReadCSV();
-	ArrayList<String[]> edges = reader.read(args[0]);
+	if(args.length < 1) {
+		System.out.println("usage: java RunMaxFlow path/to/input/graph [-objects]");
+		return;
+	}
+	boolean objects = args.length > 1 && args[1].equals("-objects");
 
-	String out_path = args[1];
+	//A compressed graph is only mapped, and each engine's residual graph is
+	//decoded straight from the file.  Anything else is loaded into a
+	//FlowGraph first.
+	PhaseTimer timer = PhaseTimer.current();
+	CompressedGraphFormat.Graph compressed = null;
+	FlowGraph g = null;
+	try {
+		timer.reset();
+		if(CompressedGraphFormat.isCompressed(args[0])) {
+			compressed = CompressedGraphFormat.open(args[0]);
+		} else {
+			g = FlowGraph.load(args[0]);
+		}
+	} catch(IOException e) {
+		System.out.println("error reading graph: " + e.getMessage());
+		return;
+	}
+	int num_nodes = compressed != null ? compressed.numNodes() : g.numNodes();
+	int num_edges = compressed != null ? compressed.numEdges() : g.numEdges();
+	System.out.printf("%s: %d nodes, %d edges, parsed in %.3f ms (%.3f ms cpu)%n", args[0],
+			num_nodes, num_edges, millis(timer.wallNanos(PhaseTimer.Phase.PARSE)),
+			millis(timer.cpuNanos(PhaseTimer.Phase.PARSE)));
 
-	HashMap<String, Vertex> vertices = new HashMap<String, Vertex>();
+	int s = compressed != null ? compressed.id("s") : g.id("s");
+	int t = compressed != null ? compressed.id("t") : g.id("t");
 
-	for(String[] arr : edges) {
+	System.out.printf("%-38s %10s", "engine", "flow");
+	for(PhaseTimer.Phase phase : PhaseTimer.Phase.values()) {
+		if(phase != PhaseTimer.Phase.PARSE) {
+			System.out.printf(" %21s", phase.name().toLowerCase() + " wall/cpu");
+		}
+	}
+	System.out.println();
 
-		g.addNode(arr[0]);
-		g.addNode(arr[1]);
-		g.addEdge(arr[0], arr[1], Integer.parseInt(arr[2]));
+	for(MaxFlowEngine engine : MaxFlowEngine.values()) {
+		timer.reset();
+		CsrResidualGraph residual = compressed != null ? new CsrResidualGraph(compressed)
+				: new CsrResidualGraph(g);
+		int flow = engine.solve(residual, s, t);
+		printRow(engine.displayName(), flow, timer);
+	}
 
-		try {
-			if(!vertices.containsKey(arr[0])) {
-				vertices.put(arr[0], sg.insertVertex(new VertexData(false), arr[0]));
-			}
-			if(!vertices.containsKey(arr[1])) {
-				vertices.put(arr[1], sg.insertVertex(new VertexData(false), arr[1]));
+	if(objects) {
+		if(g == null) {
+			g = compressed.toFlowGraph();
+		}
+		timer.reset();
+		int ff_max_flow = flowOut(FordFulkerson.maxFlow(g, s, t), s);
+		printRow("Ford Fulkerson (FlowNetwork)", ff_max_flow, timer);
+
+		timer.reset();
+		int sff_max_flow = flowOut(FordFulkersonScaling.maxFlow(g, s, t), s);
+		printRow("Scaling Ford Fulkerson (FlowNetwork)", sff_max_flow, timer);
+	}
+	}
+
+	// Prints the flow and the time charged to each stage after parsing.
+	private static void printRow(String name, int flow, PhaseTimer timer) {
+		System.out.printf("%-38s %10d", name, flow);
+		for(PhaseTimer.Phase phase : PhaseTimer.Phase.values()) {
+			if(phase != PhaseTimer.Phase.PARSE) {
+				System.out.printf(" %10.3f/%10.3f", millis(timer.wallNanos(phase)),
+						millis(timer.cpuNanos(phase)));
 			}
-			sg.insertEdge(vertices.get(arr[0]), vertices.get(arr[1]), new EdgeData(Integer.parseInt(arr[2]), 0), arr[0]+arr[1]);
-		} catch(Exception e) {
-			System.out.println("error making graph");
-			return;
 		}
+		System.out.println();
+	}
+
+	// Returns the net flow out of the source of a flow network.
+	private static int flowOut(FlowNetwork<Integer> network, int s) {
+		int flow = 0;
+		for(FlowNetwork.Edge<Integer> edge : network.edgesFrom(s)) {
+			flow += edge.getFlow();
+		}
+		return flow;
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000.0;
 	}
-	int sum = 0;
-	
-	long fordfulkerson_runtime, fordfulkeronsscaling_runtime, preflow_runtime = 0;
-
-	FordFulkerson f = new FordFulkerson();
-	long start_time = System.nanoTime();
-	FlowNetwork ff_max_flow = f.maxFlow(g,"s","t");
-	fordfulkerson_runtime = (System.nanoTime() - start_time)/ 1000000000.0
-	//System.out.println(fordfulkerson_runtime);
-
-	FordFulkersonScaling sf = new FordFulkersonScaling();
-	start_time = System.nanoTime();
-	FlowNetwork sff_max_flow = sf.maxFlow(g,"s","t");
-	fordfulkeronsscaling_runtime = (System.nanoTime() - start_time)/ 1000000000.0);
-	//System.out.println(fordfulkeronsscaling_runtime);
-
-	PreflowPush pfp = new PreflowPush(sg, vertices.get("s"), vertices.get("t"));
-	pfp.initialize();
-	start_time = System.nanoTime();
-	int flow = pfp.computeMaxFlow();
-	preflow_runtime = (System.nanoTime() - start_time)/ 1000000000.0
-	//System.out.println(preflow_runtime);
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,138 @@
+/*****************************************************************************
+ * File: Samples.java
+ *
+ * A set of timing samples, in nanoseconds, along with the summary statistics
+ * we report for them.  The samples are sorted once on construction, so
+ * order statistics such as the median and other percentiles are cheap.
+ *
+ * Percentiles are computed by linear interpolation between the two closest
+ * ranks, so the 50th percentile of an even number of samples is the mean of
+ * the middle two.  The error margin is the half-width of a 99% confidence
+ * interval for the mean, using Student's t-distribution since we rarely take
+ * more than a few dozen samples.
+ */
+import java.util.*; // For Arrays
+
+public final class Samples {
+    /* Two-sided 99% critical values of Student's t-distribution for 1
+     * through 30 degrees of freedom.  Beyond that the normal value is close
+     * enough.
+     */
+    private static final double[] T_99 = {
+        63.657, 9.925, 5.841, 4.604, 4.032, 3.707, 3.499, 3.355, 3.250, 3.169,
+        3.106, 3.055, 3.012, 2.977, 2.947, 2.921, 2.898, 2.878, 2.861, 2.845,
+        2.831, 2.819, 2.807, 2.797, 2.787, 2.779, 2.771, 2.763, 2.756, 2.750
+    };
+    private static final double Z_99 = 2.576;
+
+    private final long[] nanos;
+
+    /**
+     * Constructs a set of samples from the given timings.  The array is
+     * copied, so the caller may reuse it.
+     *
+     * @param nanos The timings, in nanoseconds.
+     * @throws IllegalArgumentException If there are no timings.
+     */
+    public Samples(long[] nanos) {
+        if (nanos.length == 0)
+            throw new IllegalArgumentException("At least one sample is required.");
+        this.nanos = nanos.clone();
+        Arrays.sort(this.nanos);
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return The number of samples.
+     */
+    public int count() {
+        return nanos.length;
+    }
+
+    /**
+     * Returns the smallest sample.
+     *
+     * @return The smallest sample, in nanoseconds.
+     */
+    public long min() {
+        return nanos[0];
+    }
+
+    /**
+     * Returns the largest sample.
+     *
+     * @return The largest sample, in nanoseconds.
+     */
+    public long max() {
+        return nanos[nanos.length - 1];
+    }
+
+    /**
+     * Returns the mean of the samples.
+     *
+     * @return The mean, in nanoseconds.
+     */
+    public double mean() {
+        double sum = 0;
+        for (long sample: nanos)
+            sum += sample;
+        return sum / nanos.length;
+    }
+
+    /**
+     * Returns the sample standard deviation, or zero if there is only one
+     * sample.
+     *
+     * @return The standard deviation, in nanoseconds.
+     */
+    public double stddev() {
+        if (nanos.length < 2) return 0;
+
+        double mean = mean();
+        double sum = 0;
+        for (long sample: nanos)
+            sum += (sample - mean) * (sample - mean);
+        return Math.sqrt(sum / (nanos.length - 1));
+    }
+
+    /**
+     * Returns the half-width of a 99% confidence interval for the mean, or
+     * zero if there is only one sample.
+     *
+     * @return The error margin, in nanoseconds.
+     */
+    public double errorMargin() {
+        int df = nanos.length - 1;
+        if (df == 0) return 0;
+
+        double critical = df <= T_99.length ? T_99[df - 1] : Z_99;
+        return critical * stddev() / Math.sqrt(nanos.length);
+    }
+
+    /**
+     * Returns the median of the samples.
+     *
+     * @return The median, in nanoseconds.
+     */
+    public double median() {
+        return percentile(50);
+    }
+
+    /**
+     * Returns the given percentile of the samples.
+     *
+     * @param p The percentile, between 0 and 100 inclusive.
+     * @return That percentile, in nanoseconds.
+     * @throws IllegalArgumentException If p is out of range.
+     */
+    public double percentile(double p) {
+        if (p < 0 || p > 100)
+            throw new IllegalArgumentException("Percentile " + p + " is out of range.");
+
+        double rank = p / 100 * (nanos.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return nanos[lower] + (rank - lower) * (nanos[upper] - nanos[lower]);
+    }
+}
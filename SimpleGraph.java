@@ -62,14 +62,15 @@ public class SimpleGraph {
     }
 
     /**
-     * Add a vertex to this graph.
+     * Add a vertex to this graph.  The new vertex is given the next
+     * unused id, so the vertices of a graph have ids 0 through n-1.
      * @param data  an object to be associated with the new vertex
      * @param name  a name to be associated with the new vertex
      * @returns  the new vertex
      */
     public Vertex insertVertex(Object data, Object name) {
         Vertex v;
-        v = new Vertex(data, name);
+        v = new Vertex(data, name, vertexList.size());
         vertexList.addLast(v);
         return v;
     }
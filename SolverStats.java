@@ -0,0 +1,153 @@
+/*****************************************************************************
+ * File: SolverStats.java
+ *
+ * Counters describing the work a max-flow engine does, so that runs can be
+ * compared by what the engines actually did rather than only by how long
+ * they took.  Each thread has its own set of counters, fetched once per
+ * solve with current(); the engines then add to plain long fields, so
+ * counting costs no more than an add and needs no synchronization.  Engines
+ * accumulate the counts for tight loops in local variables and add them in
+ * once at the end of the loop.
+ *
+ * Not every counter applies to every engine.  The counters are:
+ *
+ *   augmentingPaths     - Augmenting paths along which flow was pushed.
+ *   arcsScanned         - Residual arcs examined by searches, pushes and
+ *                         relabels.
+ *   saturatingPushes    - Pushes that used up an arc's residual capacity.
+ *   nonSaturatingPushes - Pushes that left capacity on the arc.
+ *   relabels            - Relabels of a single vertex.
+ *   gapRelabels         - Gaps found by the gap heuristic.
+ *   globalRelabels      - Global relabels.
+ *   scalingPhases       - Phases of a capacity-scaling engine.
+ *
+ * A driver calls reset() before a solve and reads the counters, or takes a
+ * snapshot(), once the solve returns.
+ */
+public final class SolverStats {
+    private static final ThreadLocal<SolverStats> CURRENT = ThreadLocal.withInitial(SolverStats::new);
+
+    /* The names of the counters, in the order toCsv() reports them. */
+    static final String CSV_HEADER = "augmenting_paths,arcs_scanned,saturating_pushes,"
+        + "nonsaturating_pushes,relabels,gap_relabels,global_relabels,scaling_phases";
+
+    /* The counters themselves, which engines add to directly. */
+    long augmentingPaths;
+    long arcsScanned;
+    long saturatingPushes;
+    long nonSaturatingPushes;
+    long relabels;
+    long gapRelabels;
+    long globalRelabels;
+    long scalingPhases;
+
+    /**
+     * Returns the counters for the calling thread.
+     *
+     * @return The calling thread's counters.
+     */
+    public static SolverStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets every counter back to zero.
+     */
+    public void reset() {
+        augmentingPaths = 0;
+        arcsScanned = 0;
+        saturatingPushes = 0;
+        nonSaturatingPushes = 0;
+        relabels = 0;
+        gapRelabels = 0;
+        globalRelabels = 0;
+        scalingPhases = 0;
+    }
+
+    /**
+     * Returns a copy of the counters as they stand.
+     *
+     * @return A copy of the counters.
+     */
+    public SolverStats snapshot() {
+        SolverStats result = new SolverStats();
+        result.augmentingPaths = augmentingPaths;
+        result.arcsScanned = arcsScanned;
+        result.saturatingPushes = saturatingPushes;
+        result.nonSaturatingPushes = nonSaturatingPushes;
+        result.relabels = relabels;
+        result.gapRelabels = gapRelabels;
+        result.globalRelabels = globalRelabels;
+        result.scalingPhases = scalingPhases;
+        return result;
+    }
+
+    public long augmentingPaths() {
+        return augmentingPaths;
+    }
+
+    public long arcsScanned() {
+        return arcsScanned;
+    }
+
+    public long saturatingPushes() {
+        return saturatingPushes;
+    }
+
+    public long nonSaturatingPushes() {
+        return nonSaturatingPushes;
+    }
+
+    public long relabels() {
+        return relabels;
+    }
+
+    public long gapRelabels() {
+        return gapRelabels;
+    }
+
+    public long globalRelabels() {
+        return globalRelabels;
+    }
+
+    public long scalingPhases() {
+        return scalingPhases;
+    }
+
+    /**
+     * Returns the counters as comma-separated values, in the order given by
+     * CSV_HEADER.
+     *
+     * @return The counters as CSV fields.
+     */
+    public String toCsv() {
+        return augmentingPaths + "," + arcsScanned + "," + saturatingPushes + ","
+            + nonSaturatingPushes + "," + relabels + "," + gapRelabels + ","
+            + globalRelabels + "," + scalingPhases;
+    }
+
+    /**
+     * Returns the nonzero counters in a compact, human-readable form.
+     *
+     * @return A description of the counters.
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        append(result, "paths", augmentingPaths);
+        append(result, "arcs", arcsScanned);
+        append(result, "sat-pushes", saturatingPushes);
+        append(result, "nonsat-pushes", nonSaturatingPushes);
+        append(result, "relabels", relabels);
+        append(result, "gaps", gapRelabels);
+        append(result, "global-relabels", globalRelabels);
+        append(result, "phases", scalingPhases);
+        return result.toString();
+    }
+
+    private static void append(StringBuilder result, String name, long value) {
+        if (value == 0) return;
+        if (result.length() > 0) result.append(' ');
+        result.append(name).append('=').append(value);
+    }
+}
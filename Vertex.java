@@ -24,6 +24,7 @@ public class Vertex {
 
     private Object data;              // an object associated with this vertex
     private Object name;              // a name associated with this vertex
+    private int id;                   // the index of this vertex in its graph
     
     /**
      * Constructor that allows data and a name to be associated
@@ -32,11 +33,31 @@ public class Vertex {
      * @param name     a name to be associated with this vertex
      */
     public Vertex(Object data, Object name) {
+        this(data, name, -1);
+    }
+
+    /**
+     * Constructor that also assigns the vertex a dense integer id.
+     * @param data     an object to be associated with this vertex
+     * @param name     a name to be associated with this vertex
+     * @param id       the index of this vertex in its graph
+     */
+    Vertex(Object data, Object name, int id) {
         this.data = data;
         this.name = name;
+        this.id = id;
         this.incidentEdgeList = new LinkedList();
     }
     
+    /**
+     * Return the id of this vertex.  Vertices created by a SimpleGraph are
+     * numbered 0, 1, 2, ... in order of insertion; other vertices have id -1.
+     * @return  the id of this vertex
+     */
+    public int getId() {
+        return this.id;
+    }
+    
     /**
      * Return the name associated with this vertex.
      * @return  the name of this vertex